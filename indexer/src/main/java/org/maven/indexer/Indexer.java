@@ -5,6 +5,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -155,40 +157,45 @@ public class Indexer {
       doc.add( Field.Text( JAR_SIZE, Long.toString(size)));
       // TODO calculate jar's sha1 or md5
 
-//      ZipFile jar = null;
-      try {
-/*      
-        jar = new ZipFile( f);
-        
-        StringBuffer sb = new StringBuffer();
-        for( Enumeration en = jar.entries(); en.hasMoreElements();) {
-          ZipEntry e = ( ZipEntry) en.nextElement();
-          String name = e.getName();
-          if( name.endsWith( ".class")) {
-            totalClasses++;
-            // TODO verify if class is public or protected
-            // TODO skipp all inner classes for now
-            int i = name.lastIndexOf( "$");
-            if( i==-1) {
-              sb.append( name.substring( 0, name.length() - 6)).append( "\n");
-            }
-          }
-        }
-        doc.add( Field.Text( NAMES, sb.toString()));
-        
-
-      } finally {
+      if( jarFile.exists()) {
         try {
-          jar.close();
-        } catch( Exception e) {
+          doc.add( Field.Text( NAMES, readNames( jarFile)));
+        } catch( IOException e) {
+          // jar is still indexed, so it can be found by name
+          System.err.println( "Corrupted jar "+jarFile);
+          System.err.println( "  "+e.getMessage());
         }
-*/    
-      w.addDocument(doc);
-    } catch( Exception e) {
-      System.err.println( "Error for file "+f);
-      System.err.println( "  "+e.getMessage());
+      }
+      
+      try {
+        w.addDocument(doc);
+      } catch( Exception e) {
+        System.err.println( "Error for file "+f);
+        System.err.println( "  "+e.getMessage());
+      }
     }
+  }
+
+  /**
+   * Returns newline separated names of the classes from given jar
+   * 
+   * @throws java.util.zip.ZipException if jar is corrupted 
+   */
+  public static String readNames( File jarFile) throws IOException {
+    List classNames = JarScanner.readClassNames( jarFile);
+    totalClasses += classNames.size();
+
+    StringBuffer sb = new StringBuffer();
+    for( Iterator it = classNames.iterator(); it.hasNext();) {
+      String name = ( String) it.next();
+      // TODO verify if class is public or protected
+      // TODO skipp all inner classes for now
+      int i = name.lastIndexOf( "$");
+      if( i==-1) {
+        sb.append( name).append( "\n");
+      }
     }
+    return sb.toString();
   }
 
 }
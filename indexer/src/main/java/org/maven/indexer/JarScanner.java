@@ -0,0 +1,146 @@
+
+package org.maven.indexer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipException;
+
+
+/**
+ * Reads class names from the jar central directory. Only the end of central directory record 
+ * and the central directory are read and names are decoded straight from the read buffer,
+ * without creating entry objects for the whole archive. Archive is not memory mapped, because
+ * mapped files stay locked until mapping is garbage collected.
+ */
+public class JarScanner {
+  private static final int END_SIGNATURE = 0x06054b50;
+  private static final int END_SIZE = 22;
+  private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+  private static final int ENTRY_SIGNATURE = 0x02014b50;
+  private static final int ENTRY_SIZE = 46;
+  
+  private static final byte[] CLASS_SUFFIX = ".class".getBytes();
+
+  private JarScanner() {
+  }
+
+  /**
+   * Returns names of all class entries without ".class" suffix, e.g. "org/apache/commons/logging/Log"
+   * 
+   * @throws ZipException if file is not a valid zip archive
+   */
+  public static List readClassNames(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      long size = channel.size();
+      if(size < END_SIZE) {
+        throw new ZipException("Not a zip file " + file.getAbsolutePath());
+      }
+
+      // end of central directory record is followed by a comment of up to 64k
+      int tailSize = (int) Math.min(size, END_SIZE + MAX_COMMENT_SIZE);
+      long tailStart = size - tailSize;
+      ByteBuffer tail = read(channel, tailStart, tailSize, file);
+
+      int end = findEnd(tail, tailSize);
+      if(end == -1) {
+        throw new ZipException("No end of central directory in " + file.getAbsolutePath());
+      }
+
+      int entries = tail.getShort(end + 10) & 0xFFFF;
+      long directorySize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+      long directoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+      if(directoryOffset + directorySize > tailStart + end) {
+        throw new ZipException("Invalid central directory in " + file.getAbsolutePath());
+      }
+
+      ByteBuffer directory = read(channel, directoryOffset, (int) directorySize, file);
+      return readClassNames(directory, entries, file);
+
+    } finally {
+      try {
+        raf.close();
+      } catch(IOException ex) {
+        // ignore
+      }
+    }
+  }
+
+  private static ByteBuffer read(FileChannel channel, long position, int size, File file) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    while(buffer.hasRemaining()) {
+      if(channel.read(buffer, position + buffer.position()) == -1) {
+        throw new ZipException("Unexpected end of file " + file.getAbsolutePath());
+      }
+    }
+    buffer.flip();
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    return buffer;
+  }
+
+  private static int findEnd(ByteBuffer tail, int tailSize) {
+    for(int n = tailSize - END_SIZE; n >= 0; n-- ) {
+      if(tail.getInt(n) == END_SIGNATURE) {
+        int commentSize = tail.getShort(n + 20) & 0xFFFF;
+        if(n + END_SIZE + commentSize <= tailSize) {
+          return n;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private static List readClassNames(ByteBuffer directory, int entries, File file) throws IOException {
+    List names = new ArrayList();
+    int limit = directory.limit();
+    byte[] buf = new byte[256];
+    int pos = 0;
+    for(int i = 0; i < entries; i++ ) {
+      if(pos + ENTRY_SIZE > limit || directory.getInt(pos) != ENTRY_SIGNATURE) {
+        throw new ZipException("Invalid central directory entry " + i + " in " + file.getAbsolutePath());
+      }
+      int nameSize = directory.getShort(pos + 28) & 0xFFFF;
+      int extraSize = directory.getShort(pos + 30) & 0xFFFF;
+      int commentSize = directory.getShort(pos + 32) & 0xFFFF;
+      int namePos = pos + ENTRY_SIZE;
+      if(namePos + nameSize > limit) {
+        throw new ZipException("Invalid central directory entry " + i + " in " + file.getAbsolutePath());
+      }
+
+      if(isClass(directory, namePos, nameSize)) {
+        int len = nameSize - CLASS_SUFFIX.length;
+        if(buf.length < len) {
+          buf = new byte[len];
+        }
+        directory.position(namePos);
+        directory.get(buf, 0, len);
+        names.add(new String(buf, 0, len, "UTF-8"));
+      }
+
+      pos = namePos + nameSize + extraSize + commentSize;
+    }
+    return names;
+  }
+
+  private static boolean isClass(ByteBuffer directory, int namePos, int nameSize) {
+    if(nameSize <= CLASS_SUFFIX.length) {
+      return false;
+    }
+    int suffixPos = namePos + nameSize - CLASS_SUFFIX.length;
+    for(int i = 0; i < CLASS_SUFFIX.length; i++ ) {
+      if(directory.get(suffixPos + i) != CLASS_SUFFIX[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
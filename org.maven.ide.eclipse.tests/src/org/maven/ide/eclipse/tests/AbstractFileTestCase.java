@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.maven.ide.eclipse.tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+
+/**
+ * Base class for tests that write files into a folder which is created empty before each test and deleted after it.
+ */
+public abstract class AbstractFileTestCase extends TestCase {
+  protected File baseDir;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+    baseDir = new File("target", getClass().getName());
+    delete(baseDir);
+    baseDir.mkdirs();
+  }
+
+  protected void tearDown() throws Exception {
+    delete(baseDir);
+    super.tearDown();
+  }
+
+  protected File createFile(String name, String content) throws IOException {
+    File file = new File(baseDir, name);
+    FileOutputStream os = new FileOutputStream(file);
+    try {
+      os.write(content.getBytes("UTF-8"));
+    } finally {
+      os.close();
+    }
+    return file;
+  }
+
+  protected static void delete(File file) {
+    if(file.isDirectory()) {
+      File[] files = file.listFiles();
+      for(int i = 0; i < files.length; i++ ) {
+        delete(files[i]);
+      }
+    }
+    file.delete();
+  }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.maven.ide.eclipse.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.maven.ide.eclipse.embedder.ArtifactKey;
+
+
+public class ArtifactKeyTest extends TestCase {
+
+  public void testEquals() throws Exception {
+    ArtifactKey key = ArtifactKey.get("test", "a", "1.0");
+    ArtifactKey other = ArtifactKey.get("test", "a", "1.0");
+    assertEquals(key, other);
+    assertEquals(key.hashCode(), other.hashCode());
+
+    assertFalse(key.equals(ArtifactKey.get("test", "a", "1.1")));
+    assertFalse(key.equals(ArtifactKey.get("test", "b", "1.0")));
+    assertFalse(key.equals(ArtifactKey.get(null, "a", "1.0")));
+    assertEquals(ArtifactKey.get(null, "a", "1.0"), ArtifactKey.get(null, "a", "1.0"));
+  }
+
+  public void testIntern() throws Exception {
+    ArtifactKey key = ArtifactKey.get("test", "intern", "1.0");
+    ArtifactKey other = ArtifactKey.get("test", "intern", "1.0");
+    // lookup keys are not shared
+    assertNotSame(key, other);
+
+    ArtifactKey canonical = key.intern();
+    assertSame(canonical, other.intern());
+    assertSame(canonical, canonical.intern());
+    assertSame(canonical, ArtifactKey.parse("test:intern:1.0").intern());
+    assertNotSame(canonical, ArtifactKey.get("test", "intern", "2.0").intern());
+  }
+
+  public void testConcurrentIntern() throws Exception {
+    final ArtifactKey[][] results = new ArtifactKey[8][100];
+    final List errors = new ArrayList();
+    Thread[] threads = new Thread[results.length];
+    for(int i = 0; i < threads.length; i++ ) {
+      final ArtifactKey[] keys = results[i];
+      threads[i] = new Thread() {
+        public void run() {
+          try {
+            for(int j = 0; j < keys.length; j++ ) {
+              keys[j] = ArtifactKey.get("test", "concurrent" + j, "1.0").intern();
+            }
+          } catch(Throwable t) {
+            synchronized(errors) {
+              errors.add(t);
+            }
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for(int i = 0; i < threads.length; i++ ) {
+      threads[i].join();
+    }
+    assertEquals(errors.toString(), 0, errors.size());
+
+    for(int i = 1; i < results.length; i++ ) {
+      for(int j = 0; j < results[i].length; j++ ) {
+        assertSame(results[0][j], results[i][j]);
+      }
+    }
+  }
+
+  public void testModelKey() throws Exception {
+    Parent parent = new Parent();
+    parent.setGroupId("test");
+    parent.setArtifactId("parent");
+    parent.setVersion("1.0");
+
+    Model model = new Model();
+    model.setArtifactId("a");
+    model.setParent(parent);
+    assertEquals(ArtifactKey.get("test", "a", "1.0"), ArtifactKey.get(model));
+    assertEquals(ArtifactKey.get("test", "parent", "1.0"), ArtifactKey.get(parent));
+
+    model.setGroupId("other");
+    model.setVersion("2.0");
+    assertEquals(ArtifactKey.get("other", "a", "2.0"), ArtifactKey.get(model));
+  }
+
+  public void testParse() throws Exception {
+    ArtifactKey key = ArtifactKey.get("test", "a", "1.0");
+    assertEquals(key, ArtifactKey.parse(key.toString()));
+    assertNull(ArtifactKey.parse("test"));
+    assertNull(ArtifactKey.parse("test:a"));
+  }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.maven.ide.eclipse.tests;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.maven.ide.eclipse.Maven2Plugin;
+import org.maven.ide.eclipse.embedder.ArtifactPomCache;
+import org.maven.ide.eclipse.embedder.ArtifactPomCache.PomSummary;
+
+
+public class ArtifactPomCacheTest extends AbstractFileTestCase {
+
+  public void testSummary() throws Exception {
+    File pomFile = createPom("a", "<project><modelVersion>4.0.0</modelVersion>"
+        + "<parent><groupId>test</groupId><artifactId>parent</artifactId><version>1.0</version></parent>"
+        + "<artifactId>a</artifactId><packaging>war</packaging><url> http://test/a </url></project>");
+    PomSummary summary = createCache(10).get(pomFile);
+    assertEquals("test", summary.getGroupId());
+    assertEquals("a", summary.getArtifactId());
+    assertEquals("1.0", summary.getVersion());
+    assertEquals("war", summary.getPackaging());
+    assertEquals("http://test/a", summary.getUrl());
+
+    pomFile = createPom("b", createContent("b", " "));
+    assertNull(createCache(10).get(pomFile).getUrl());
+  }
+
+  public void testChangedPom() throws Exception {
+    File pomFile = createPom("a", createContent("a", "http://test/a"));
+    ArtifactPomCache cache = createCache(10);
+    PomSummary summary = cache.get(pomFile);
+    assertSame(summary, cache.get(pomFile));
+
+    // different size
+    createPom("a", createContent("a", "http://test/changed"));
+    summary = cache.get(pomFile);
+    assertEquals("http://test/changed", summary.getUrl());
+    assertSame(summary, cache.get(pomFile));
+
+    // same size, different modification time
+    createPom("a", createContent("a", "http://test/updated"));
+    pomFile.setLastModified(pomFile.lastModified() - 10000L);
+    PomSummary updated = cache.get(pomFile);
+    assertNotSame(summary, updated);
+    assertEquals("http://test/updated", updated.getUrl());
+  }
+
+  public void testDeletedPom() throws Exception {
+    File pomFile = createPom("a", createContent("a", "http://test/a"));
+    ArtifactPomCache cache = createCache(10);
+    assertNotNull(cache.get(pomFile));
+
+    pomFile.delete();
+    assertNull(cache.get(pomFile));
+    assertNull(cache.get(new File(baseDir, "missing.xml")));
+  }
+
+  public void testMaxEntries() throws Exception {
+    File aFile = createPom("a", createContent("a", "http://test/a"));
+    File bFile = createPom("b", createContent("b", "http://test/b"));
+    File cFile = createPom("c", createContent("c", "http://test/c"));
+    ArtifactPomCache cache = createCache(2);
+    PomSummary a = cache.get(aFile);
+    PomSummary b = cache.get(bFile);
+    assertSame(a, cache.get(aFile));
+
+    // least recently used b is dropped
+    PomSummary c = cache.get(cFile);
+    assertSame(a, cache.get(aFile));
+    assertSame(c, cache.get(cFile));
+    assertNotSame(b, cache.get(bFile));
+  }
+
+  private ArtifactPomCache createCache(int maxEntries) {
+    return new ArtifactPomCache(Maven2Plugin.getDefault().getMavenModelManager(), maxEntries);
+  }
+
+  private String createContent(String artifactId, String url) {
+    return "<project><modelVersion>4.0.0</modelVersion><groupId>test</groupId><artifactId>" + artifactId
+        + "</artifactId><version>1.0</version><url>" + url + "</url></project>";
+  }
+
+  private File createPom(String name, String content) throws IOException {
+    return createFile(name + ".pom", content);
+  }
+
+}
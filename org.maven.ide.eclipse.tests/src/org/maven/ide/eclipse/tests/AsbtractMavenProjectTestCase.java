@@ -22,8 +22,10 @@ package org.maven.ide.eclipse.tests;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.List;
@@ -177,7 +179,7 @@ public abstract class AsbtractMavenProjectTestCase extends TestCase {
       }
     }
 
-  private Job findJob(Job[] jobs, String name) {
+  protected Job findJob(Job[] jobs, String name) {
     for(int i = 0; i < jobs.length; i++ ) {
       Job job = jobs[i];
       if(name.equals(job.getName()))
@@ -203,4 +205,22 @@ public abstract class AsbtractMavenProjectTestCase extends TestCase {
     return container.getClasspathEntries();
   }
 
+  protected static void copy(File from, File to) throws IOException {
+    InputStream is = new FileInputStream(from);
+    try {
+      OutputStream os = new FileOutputStream(to);
+      try {
+        byte[] buf = new byte[4096];
+        int n;
+        while((n = is.read(buf)) > -1) {
+          os.write(buf, 0, n);
+        }
+      } finally {
+        os.close();
+      }
+    } finally {
+      is.close();
+    }
+  }
+
 }
@@ -33,9 +33,12 @@ import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.core.IClasspathEntry;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jface.preference.IPreferenceStore;
 import org.maven.ide.eclipse.Maven2Plugin;
 import org.maven.ide.eclipse.embedder.BuildPathManager;
+import org.maven.ide.eclipse.embedder.MavenModelManager;
 import org.maven.ide.eclipse.embedder.ResolverConfiguration;
+import org.maven.ide.eclipse.preferences.Maven2PreferenceConstants;
 
 
 /**
@@ -85,6 +88,26 @@ public class BuildPathManagerTest extends AsbtractMavenProjectTestCase {
     assertTrue(project2entries[1].getPath().lastSegment().equals("junit-4.1.jar"));
   }
 
+  public void testResolutionOrder() throws Exception {
+    deleteProject("MNGECLIPSE-248parent");
+    deleteProject("MNGECLIPSE-248child");
+
+    IProject project1 = createProject("MNGECLIPSE-248parent", "projects/MNGECLIPSE-248parent/pom.xml");
+    IProject project2 = createProject("MNGECLIPSE-248child", "projects/MNGECLIPSE-248child/pom.xml");
+
+    NullProgressMonitor monitor = new NullProgressMonitor();
+    BuildPathManager buildpathManager = Maven2Plugin.getDefault().getBuildpathManager();
+    buildpathManager.enableMavenNature(project1, new ResolverConfiguration(), monitor);
+    buildpathManager.enableMavenNature(project2, new ResolverConfiguration(), monitor);
+    waitForJobsToComplete();
+
+    MavenModelManager modelManager = Maven2Plugin.getDefault().getMavenModelManager();
+    IProject[] expected = new IProject[] {project1, project2};
+    IProject[] reversed = new IProject[] {project2, project1};
+    assertEquals(Arrays.asList(expected), modelManager.getResolutionOrder(Arrays.asList(reversed)));
+    assertEquals(Arrays.asList(expected), modelManager.getResolutionOrder(Arrays.asList(expected)));
+  }
+
   public void testEnableMavenNatureWithNoWorkspace() throws Exception {
     deleteProject("MNGECLIPSE-248parent");
     deleteProject("MNGECLIPSE-248child");
@@ -260,6 +283,54 @@ public class BuildPathManagerTest extends AsbtractMavenProjectTestCase {
     return sb.toString();
   }
 
+  public void testParallelResolution() throws Exception {
+    deleteProject("MNGECLIPSE-20");
+    deleteProject("MNGECLIPSE-20-app");
+    deleteProject("MNGECLIPSE-20-ear");
+    deleteProject("MNGECLIPSE-20-ejb");
+    deleteProject("MNGECLIPSE-20-type");
+    deleteProject("MNGECLIPSE-20-web");
+
+    IPreferenceStore preferenceStore = Maven2Plugin.getDefault().getPreferenceStore();
+    int threads = preferenceStore.getInt(Maven2PreferenceConstants.P_RESOLVER_THREADS);
+    preferenceStore.setValue(Maven2PreferenceConstants.P_RESOLVER_THREADS, 4);
+    try {
+      ResolverConfiguration configuration = new ResolverConfiguration();
+      IProject[] projects = new IProject[] {
+          importProject("projects/MNGECLIPSE-20/pom.xml", configuration),
+          importProject("projects/MNGECLIPSE-20/type/pom.xml", configuration),
+          importProject("projects/MNGECLIPSE-20/app/pom.xml", configuration),
+          importProject("projects/MNGECLIPSE-20/web/pom.xml", configuration),
+          importProject("projects/MNGECLIPSE-20/ejb/pom.xml", configuration),
+          importProject("projects/MNGECLIPSE-20/ear/pom.xml", configuration)};
+      waitForJobsToComplete();
+
+      // resolve all projects again as a single batch
+      Maven2Plugin.getDefault().getBuildpathManager().scheduleUpdateClasspathContainer(Arrays.asList(projects));
+      waitForJobsToComplete();
+
+      assertEntries(projects[2], new String[] {"MNGECLIPSE-20-type", "junit-3.8.1.jar", "log4j-1.2.4.jar"});
+      assertEntries(projects[3], new String[] {"MNGECLIPSE-20-app", "MNGECLIPSE-20-type", "log4j-1.2.4.jar"});
+      assertEntries(projects[4], new String[] {"MNGECLIPSE-20-app", "MNGECLIPSE-20-type", "log4j-1.2.4.jar"});
+      assertEntries(projects[5], new String[] {"MNGECLIPSE-20-app", "MNGECLIPSE-20-ejb", "MNGECLIPSE-20-type",
+          "log4j-1.2.4.jar"});
+      for(int i = 0; i < projects.length; i++ ) {
+        IMarker[] markers = projects[i].findMarkers(null, true, IResource.DEPTH_INFINITE);
+        assertEquals(toString(markers), 0, markers.length);
+      }
+    } finally {
+      preferenceStore.setValue(Maven2PreferenceConstants.P_RESOLVER_THREADS, threads);
+    }
+  }
+
+  private void assertEntries(IProject project, String[] names) throws Exception {
+    IClasspathEntry[] entries = getMavenContainerEntries(project);
+    assertEquals(names.length, entries.length);
+    for(int i = 0; i < names.length; i++ ) {
+      assertEquals(names[i], entries[i].getPath().lastSegment());
+    }
+  }
+
   public void testProjectImportNoWorkspaceResolution() throws Exception {
     deleteProject("MNGECLIPSE-20");
     deleteProject("MNGECLIPSE-20-app");
@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.maven.ide.eclipse.tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.maven.ide.eclipse.index.Indexer;
+import org.maven.ide.eclipse.index.MavenRepositoryIndexManager;
+import org.maven.ide.eclipse.index.SearchResultCache;
+
+
+public class IndexerTest extends AbstractFileTestCase {
+  private File repositoryDir;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+    repositoryDir = new File(baseDir, "repository");
+
+    for(char c = 'a'; c < 'k'; c++ ) {
+      String group = "org/foo" + c;
+      createJar(group, "bar", "1.0", new String[] {group + "/Bar.class", group + "/Baz.class"});
+      createJar(group, "bar", "1.1", new String[] {group + "/Bar.class"});
+    }
+  }
+
+  public void testParallelReindex() throws Exception {
+    Indexer serial = new Indexer();
+    File serialIndex = new File(baseDir, "serial");
+    serial.reindex(serialIndex.getAbsolutePath(), repositoryDir.getAbsolutePath(), "local", new NullProgressMonitor());
+
+    Indexer parallel = new Indexer();
+    parallel.setThreads(4);
+    File parallelIndex = new File(baseDir, "parallel");
+    parallel.reindex(parallelIndex.getAbsolutePath(), repositoryDir.getAbsolutePath(), "local", new NullProgressMonitor());
+
+    assertEquals(serial.totalFiles, parallel.totalFiles);
+    assertEquals(serial.totalClasses, parallel.totalClasses);
+    assertEquals(serial.totalSize, parallel.totalSize);
+    assertEquals(20, getNumArtifacts(serialIndex));
+    assertEquals(getNumArtifacts(serialIndex), getNumArtifacts(parallelIndex));
+
+    Map res = parallel.search(new File[] {parallelIndex}, "baz", Indexer.NAMES);
+    assertEquals(10, res.size());
+  }
+
+  public void testIncrementalReindex() throws Exception {
+    File indexDir = new File(baseDir, "index");
+    new Indexer().reindex(indexDir.getAbsolutePath(), repositoryDir.getAbsolutePath(), "local", new NullProgressMonitor());
+    assertEquals(20, getNumArtifacts(indexDir));
+
+    Indexer unchanged = new Indexer();
+    unchanged.reindex(indexDir.getAbsolutePath(), repositoryDir.getAbsolutePath(), "local", true, new NullProgressMonitor());
+    assertEquals(0, unchanged.totalClasses);
+    assertEquals(20, getNumArtifacts(indexDir));
+
+    // changed, removed and added jars
+    File changed = createJar("org/fooa", "bar", "1.1", new String[] {"org/fooa/Bar.class", "org/fooa/Baz.class"});
+    changed.setLastModified(changed.lastModified() + 120000L);
+    delete(new File(repositoryDir, "org/foob"));
+    createJar("org/fook", "bar", "1.0", new String[] {"org/fook/Baz.class"});
+
+    Indexer incremental = new Indexer();
+    incremental.setThreads(2);
+    incremental.reindex(indexDir.getAbsolutePath(), repositoryDir.getAbsolutePath(), "local", true, new NullProgressMonitor());
+    assertEquals(3, incremental.totalClasses);
+    assertEquals(19, getNumArtifacts(indexDir));
+
+    Map res = incremental.search(new File[] {indexDir}, "baz", Indexer.NAMES);
+    assertEquals(10, res.size());
+  }
+
+  public void testIncrementalReindexWithoutChecksums() throws Exception {
+    delete(repositoryDir);
+    for(char c = 'a'; c < 'd'; c++ ) {
+      File dir = new File(repositoryDir, "org/foo" + c + "/bar/1.0");
+      dir.mkdirs();
+      new FileOutputStream(new File(dir, "bar-1.0.pom")).close();
+    }
+
+    File indexDir = new File(baseDir, "index");
+    new Indexer().reindex(indexDir.getAbsolutePath(), repositoryDir.getAbsolutePath(), "local", new NullProgressMonitor());
+    assertEquals(3, getNumArtifacts(indexDir));
+    long version = IndexReader.getCurrentVersion(indexDir);
+
+    // no document has a checksum, but index is in the current format
+    new Indexer().reindex(indexDir.getAbsolutePath(), repositoryDir.getAbsolutePath(), "local", true,
+        new NullProgressMonitor());
+    assertEquals(version, IndexReader.getCurrentVersion(indexDir));
+    assertEquals(3, getNumArtifacts(indexDir));
+  }
+
+  public void testUpdateDocuments() throws Exception {
+    File indexDir = new File(baseDir, "index");
+    Indexer indexer = new Indexer();
+    indexer.reindex(indexDir.getAbsolutePath(), repositoryDir.getAbsolutePath(), "local", new NullProgressMonitor());
+
+    File jarFile = createJar("org/fooa", "bar", "1.1", new String[] {"org/fooa/Bar.class", "org/fooa/Baz.class"});
+    File newFile = createJar("org/fook", "bar", "1.0", new String[] {"org/fook/Baz.class"});
+
+    List documents = new ArrayList();
+    documents.addAll(Indexer.getDocuments("central", "org/fooa/bar/1.1/bar-1.1.jar", jarFile.length(), jarFile
+        .lastModified(), null, indexer.readNames(jarFile)));
+    documents.addAll(Indexer.getDocuments("central", "org/fook/bar/1.0/bar-1.0.jar", newFile.length(), newFile
+        .lastModified(), null, indexer.readNames(newFile)));
+    indexer.updateDocuments(documents, indexDir.getAbsolutePath());
+
+    assertEquals(21, getNumArtifacts(indexDir));
+    Map res = indexer.search(new File[] {indexDir}, "baz", Indexer.NAMES);
+    assertEquals(11, res.size());
+  }
+
+  public void testClassSearch() throws Exception {
+    File indexDir = new File(baseDir, "index");
+    Indexer indexer = new Indexer();
+    indexer.reindex(indexDir.getAbsolutePath(), repositoryDir.getAbsolutePath(), "local", new NullProgressMonitor());
+
+    assertEquals(20, indexer.search(new File[] {indexDir}, "ba*", Indexer.NAMES).size());
+
+    Map res = indexer.search(new File[] {indexDir}, "bar", Indexer.NAMES);
+    assertEquals(10, res.size());
+    Indexer.ArtifactInfo info = (Indexer.ArtifactInfo) res.values().iterator().next();
+    assertEquals("Bar", info.className);
+    assertEquals(2, info.files.size());
+
+    res = indexer.search(new File[] {indexDir}, "org.fooa.baz", Indexer.NAMES);
+    assertEquals(1, res.size());
+    info = (Indexer.ArtifactInfo) res.values().iterator().next();
+    assertEquals("Baz", info.className);
+    assertEquals("org.fooa", info.packageName);
+    assertEquals(1, info.files.size());
+
+    res = indexer.search(new File[] {indexDir}, "org.fooa", Indexer.NAMES);
+    assertEquals(1, res.size());
+    info = (Indexer.ArtifactInfo) res.values().iterator().next();
+    assertNull(info.className);
+    assertEquals(2, info.files.size());
+  }
+
+  public void testBoundedSearch() throws Exception {
+    File indexDir = new File(baseDir, "index");
+    Indexer indexer = new Indexer();
+    indexer.reindex(indexDir.getAbsolutePath(), repositoryDir.getAbsolutePath(), "local", new NullProgressMonitor());
+
+    IndexSearcher searcher = new IndexSearcher(indexDir.getAbsolutePath());
+    try {
+      Indexer.SearchResult res = indexer.search(searcher, "ba*", Indexer.NAMES, 5);
+      assertEquals(5, res.artifacts.size());
+      assertTrue(res.moreResults > 0);
+
+      res = indexer.search(searcher, "baz", Indexer.NAMES, 100);
+      assertEquals(10, res.artifacts.size());
+      assertEquals(0, res.moreResults);
+    } finally {
+      searcher.close();
+    }
+  }
+
+  public void testReadNames() throws Exception {
+    File jarFile = createJar("org/fooa", "bar", "2.0", new String[] {"META-INF/MANIFEST.MF", "org/fooa/Bar.class",
+        "org/fooa/Bar$Inner.class", "org/fooa/Baz.class"});
+
+    Indexer indexer = new Indexer();
+    assertEquals("org/fooa/Bar\norg/fooa/Baz\n", indexer.readNames(jarFile));
+    assertEquals(3, indexer.totalClasses);
+  }
+
+  public void testCorruptJar() throws Exception {
+    File dir = new File(repositoryDir, "org/fooa/broken/1.0");
+    dir.mkdirs();
+    FileOutputStream os = new FileOutputStream(new File(dir, "broken-1.0.jar"));
+    try {
+      os.write("not a jar".getBytes());
+    } finally {
+      os.close();
+    }
+
+    File indexDir = new File(baseDir, "index");
+    Indexer indexer = new Indexer();
+    indexer.reindex(indexDir.getAbsolutePath(), repositoryDir.getAbsolutePath(), "local", new NullProgressMonitor());
+    assertEquals(1, indexer.getErrors().size());
+    assertEquals(21, getNumArtifacts(indexDir));
+  }
+
+  public void testSearchBySha1() throws Exception {
+    File indexDir = new File(baseDir, "index");
+    Indexer indexer = new Indexer();
+    indexer.reindex(indexDir.getAbsolutePath(), repositoryDir.getAbsolutePath(), "local", new NullProgressMonitor());
+
+    File jarFile = new File(repositoryDir, "org/fooc/bar/1.1/bar-1.1.jar");
+    String sha1 = Indexer.getSha1(jarFile);
+    assertEquals(40, sha1.length());
+
+    IndexSearcher searcher = new IndexSearcher(indexDir.getAbsolutePath());
+    try {
+      List res = indexer.searchBySha1(searcher, sha1.toUpperCase());
+      assertEquals(1, res.size());
+      Indexer.FileInfo fileInfo = (Indexer.FileInfo) res.get(0);
+      assertEquals("org.fooc", fileInfo.group);
+      assertEquals("1.1", fileInfo.version);
+      assertEquals(sha1, fileInfo.sha1);
+
+      assertEquals(0, indexer.searchBySha1(searcher, "0000000000000000000000000000000000000000").size());
+    } finally {
+      searcher.close();
+    }
+  }
+
+  public void testSearchCacheRefinement() throws Exception {
+    createJar("commons-logging", "commons-logging", "1.1", new String[] {"org/apache/commons/logging/Log.class"});
+    createJar("commons-lang", "commons-lang", "2.3", new String[] {"org/apache/commons/lang/StringUtils.class"});
+
+    File indexDir = new File(baseDir, "index");
+    Indexer indexer = new Indexer();
+    indexer.reindex(indexDir.getAbsolutePath(), repositoryDir.getAbsolutePath(), "local", new NullProgressMonitor());
+
+    IndexSearcher searcher = new IndexSearcher(indexDir.getAbsolutePath());
+    try {
+      Indexer.SearchResult res = indexer.search(searcher, "commons-l", Indexer.JAR_NAME, 10);
+      assertEquals(2, res.artifacts.size());
+
+      SearchResultCache cache = new SearchResultCache();
+      cache.put("commons-l", Indexer.JAR_NAME, 10, res);
+
+      Indexer.SearchResult cached = cache.get("commons-lo", Indexer.JAR_NAME, 10);
+      assertNotNull(cached);
+      res = indexer.search(searcher, "commons-lo", Indexer.JAR_NAME, 10);
+      assertEquals(1, res.artifacts.size());
+      assertEquals(res.artifacts.keySet(), cached.artifacts.keySet());
+
+      // leading terms of the phrase are not refined
+      assertNull(cache.get("commons-x", Indexer.JAR_NAME, 10));
+    } finally {
+      searcher.close();
+    }
+  }
+
+  public void testSearchCacheInvalidation() throws Exception {
+    createJar("commons-logging", "commons-logging", "1.1", new String[] {"org/apache/commons/logging/Log.class"});
+
+    File stateDir = new File(baseDir, "state");
+    File indexDir = new File(stateDir, "index/test");
+    Indexer indexer = new Indexer();
+    indexer.reindex(indexDir.getAbsolutePath(), repositoryDir.getAbsolutePath(), "local", new NullProgressMonitor());
+
+    MavenRepositoryIndexManager indexManager = new MavenRepositoryIndexManager(null, null, new Path(stateDir
+        .getAbsolutePath()), null);
+    indexManager.indexChanged("test");
+    assertEquals(1, indexManager.search("commons-l", Indexer.JAR_NAME, 10).artifacts.size());
+
+    createJar("commons-lang", "commons-lang", "2.3", new String[] {"org/apache/commons/lang/StringUtils.class"});
+    new Indexer().reindex(indexDir.getAbsolutePath(), repositoryDir.getAbsolutePath(), "local", true,
+        new NullProgressMonitor());
+    indexManager.indexChanged("test");
+    assertEquals(2, indexManager.search("commons-l", Indexer.JAR_NAME, 10).artifacts.size());
+  }
+
+  private int getNumArtifacts(File indexDir) throws IOException {
+    IndexReader reader = IndexReader.open(indexDir);
+    try {
+      int n = 0;
+      for(int i = 0; i < reader.maxDoc(); i++ ) {
+        if(!reader.isDeleted(i) && reader.document(i).get(Indexer.JAR_NAME) != null) {
+          n++;
+        }
+      }
+      return n;
+    } finally {
+      reader.close();
+    }
+  }
+
+  private File createJar(String groupPath, String artifactId, String version, String[] entries) throws IOException {
+    File dir = new File(repositoryDir, groupPath + "/" + artifactId + "/" + version);
+    dir.mkdirs();
+    File jarFile = new File(dir, artifactId + "-" + version + ".jar");
+    ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jarFile));
+    try {
+      for(int i = 0; i < entries.length; i++ ) {
+        zos.putNextEntry(new ZipEntry(entries[i]));
+        zos.write(new byte[] {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE});
+        zos.closeEntry();
+      }
+    } finally {
+      zos.close();
+    }
+    return jarFile;
+  }
+
+}
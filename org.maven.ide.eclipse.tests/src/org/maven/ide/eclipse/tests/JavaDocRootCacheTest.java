@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.maven.ide.eclipse.tests;
+
+import java.io.File;
+
+import org.maven.ide.eclipse.Maven2Plugin;
+import org.maven.ide.eclipse.container.JavaDocRootCache;
+
+
+public class JavaDocRootCacheTest extends AbstractFileTestCase {
+  private File file;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+    file = new File(baseDir, "javadocRoots.properties");
+  }
+
+  public void testGet() throws Exception {
+    File archive = createFile("a-javadoc.jar", "a");
+    JavaDocRootCache cache = createCache();
+    assertNull(cache.get(archive));
+
+    cache.put(archive, "apidocs/");
+    assertEquals("apidocs/", cache.get(archive));
+
+    // changed archive
+    createFile("a-javadoc.jar", "changed");
+    assertNull(cache.get(archive));
+  }
+
+  public void testSave() throws Exception {
+    File archive = createFile("a-javadoc.jar", "a");
+    JavaDocRootCache cache = createCache();
+    cache.put(archive, "apidocs/");
+    assertFalse(file.exists());
+
+    cache.save();
+    assertTrue(file.exists());
+    assertEquals("apidocs/", createCache().get(archive));
+
+    // not written again without changes
+    file.delete();
+    cache.save();
+    assertFalse(file.exists());
+  }
+
+  public void testPruneDeletedArchives() throws Exception {
+    File a = createFile("a-javadoc.jar", "a");
+    File b = createFile("b-javadoc.jar", "b");
+    JavaDocRootCache cache = createCache();
+    cache.put(a, "");
+    cache.put(b, "docs/");
+    cache.save();
+
+    b.delete();
+    long length = file.length();
+    cache = createCache();
+    assertEquals("", cache.get(a));
+    cache.save();
+    assertTrue(file.length() < length);
+
+    createFile("b-javadoc.jar", "b");
+    assertNull(createCache().get(b));
+  }
+
+  private JavaDocRootCache createCache() {
+    return new JavaDocRootCache(file, Maven2Plugin.getDefault().getConsole());
+  }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.maven.ide.eclipse.tests;
+
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.context.DefaultBuildContextManager;
+import org.maven.ide.eclipse.embedder.MavenEmbedderManager;
+
+
+public class MavenEmbedderManagerTest extends TestCase {
+
+  public void testClearBuildContext() throws Exception {
+    final ContextManager contextManager = new ContextManager();
+    final Map parentContext = contextManager.getContextMap();
+
+    final Map[] workerContexts = new Map[2];
+    Thread worker = new Thread() {
+      public void run() {
+        workerContexts[0] = contextManager.getContextMap();
+        MavenEmbedderManager.clearBuildContext();
+        workerContexts[1] = contextManager.getContextMap();
+      }
+    };
+    worker.start();
+    worker.join();
+
+    // context map is inherited by the new thread until it is cleared
+    assertSame(parentContext, workerContexts[0]);
+    assertNotSame(parentContext, workerContexts[1]);
+    assertSame(parentContext, contextManager.getContextMap());
+  }
+
+  static class ContextManager extends DefaultBuildContextManager {
+    Map getContextMap() {
+      return getContextContainerMap(true);
+    }
+  }
+
+}
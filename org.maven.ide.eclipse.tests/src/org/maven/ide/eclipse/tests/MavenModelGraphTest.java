@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.maven.ide.eclipse.tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.eclipse.core.runtime.Path;
+import org.maven.ide.eclipse.embedder.ArtifactKey;
+import org.maven.ide.eclipse.embedder.MavenModelGraph;
+
+
+public class MavenModelGraphTest extends TestCase {
+
+  public void testDependencies() throws Exception {
+    MavenModelGraph graph = new MavenModelGraph();
+    Path p1 = new Path("/p1/pom.xml");
+    Path p2 = new Path("/p2/pom.xml");
+    ArtifactKey a = ArtifactKey.get("test", "a", "1.0");
+    ArtifactKey b = ArtifactKey.get("test", "b", "1.0");
+
+    graph.addDependency(p1, a);
+    graph.addDependency(p2, a);
+    graph.addDependency(p1, b);
+    assertEquals(set(new Object[] {p1, p2}), graph.getDependentProjects(a));
+    assertEquals(set(new Object[] {p1}), graph.getDependentProjects(b));
+
+    graph.removeDependencies(p1);
+    assertEquals(set(new Object[] {p2}), graph.getDependentProjects(a));
+    assertTrue(graph.getDependentProjects(b).isEmpty());
+
+    Map projectsToArtifacts = graph.getSnapshot().getProjectsToArtifacts();
+    assertNull(projectsToArtifacts.get(p1));
+    assertEquals(set(new Object[] {a}), projectsToArtifacts.get(p2));
+  }
+
+  public void testDependentProjectsCopy() throws Exception {
+    MavenModelGraph graph = new MavenModelGraph();
+    Path p1 = new Path("/p1/pom.xml");
+    ArtifactKey a = ArtifactKey.get("test", "a", "1.0");
+    graph.addDependency(p1, a);
+
+    Set projects = graph.getDependentProjects(a);
+    graph.addDependency(new Path("/p2/pom.xml"), a);
+    assertEquals(set(new Object[] {p1}), projects);
+  }
+
+  public void testModels() throws Exception {
+    MavenModelGraph graph = new MavenModelGraph();
+    Path parentKey = new Path("/parent/pom.xml");
+    Path childKey = new Path("/child/pom.xml");
+    Model parent = createModel("parent", null);
+    Model child = createModel("child", parent);
+    graph.putModel(parentKey, parent);
+    graph.putModel(childKey, child);
+    assertSame(child, graph.getModel(childKey));
+    assertEquals(2, graph.getModelCount());
+
+    MavenModelGraph.Snapshot snapshot = graph.getSnapshot();
+    assertEquals(set(new Object[] {childKey}), snapshot.getChildren(ArtifactKey.get(parent)));
+    assertTrue(snapshot.getChildren(ArtifactKey.get(child)).isEmpty());
+
+    assertSame(child, graph.removeModel(childKey));
+    assertNull(graph.getModel(childKey));
+    assertEquals(1, graph.getModelCount());
+    assertTrue(graph.getSnapshot().getChildren(ArtifactKey.get(parent)).isEmpty());
+    assertTrue(graph.getChildren(ArtifactKey.get(parent)).isEmpty());
+  }
+
+  public void testChildren() throws Exception {
+    MavenModelGraph graph = new MavenModelGraph();
+    Path childKey = new Path("/child/pom.xml");
+    Model parent1 = createModel("parent1", null);
+    Model parent2 = createModel("parent2", null);
+    graph.putModel(childKey, createModel("child", parent1));
+    assertEquals(set(new Object[] {childKey}), graph.getChildren(ArtifactKey.get(parent1)));
+
+    // children are answered without a snapshot
+    MavenModelGraph.Snapshot snapshot = graph.getSnapshot();
+    Set children = graph.getChildren(ArtifactKey.get(parent1));
+    assertSame(snapshot, graph.getSnapshot());
+
+    // changed parent moves the pom to the children of the new parent
+    graph.putModel(childKey, createModel("child", parent2));
+    assertTrue(graph.getChildren(ArtifactKey.get(parent1)).isEmpty());
+    assertEquals(set(new Object[] {childKey}), graph.getChildren(ArtifactKey.get(parent2)));
+    assertEquals(set(new Object[] {childKey}), children);
+
+    graph.putModel(childKey, createModel("child", null));
+    assertTrue(graph.getChildren(ArtifactKey.get(parent2)).isEmpty());
+  }
+
+  public void testConcurrentModelUpdates() throws Exception {
+    final MavenModelGraph graph = new MavenModelGraph();
+    final Model[] parents = new Model[5];
+    for(int i = 0; i < parents.length; i++ ) {
+      parents[i] = createModel("parent" + i, null);
+    }
+    final int projects = 20;
+    final List errors = new ArrayList();
+    Thread[] threads = new Thread[8];
+    for(int i = 0; i < threads.length; i++ ) {
+      final int n = i;
+      threads[i] = new Thread() {
+        public void run() {
+          try {
+            for(int j = 0; j < 200; j++ ) {
+              Path pomKey = new Path("/p" + ((n + j) % projects) + "/pom.xml");
+              if(j % 9 == 0) {
+                graph.removeModel(pomKey);
+              } else {
+                graph.putModel(pomKey, createModel("p" + n, parents[(n * j) % parents.length]));
+              }
+              graph.getChildren(ArtifactKey.get(parents[j % parents.length]));
+            }
+          } catch(Throwable t) {
+            synchronized(errors) {
+              errors.add(t);
+            }
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for(int i = 0; i < threads.length; i++ ) {
+      threads[i].join();
+    }
+    assertEquals(errors.toString(), 0, errors.size());
+
+    // every stored model is a child of its own parent only
+    int children = 0;
+    for(int i = 0; i < parents.length; i++ ) {
+      ArtifactKey parentKey = ArtifactKey.get(parents[i]);
+      for(Iterator it = graph.getChildren(parentKey).iterator(); it.hasNext();) {
+        Model model = graph.getModel(it.next());
+        assertNotNull(model);
+        assertEquals(parentKey, ArtifactKey.get(model.getParent()));
+        children++;
+      }
+    }
+    assertEquals(graph.getModelCount(), children);
+  }
+
+  public void testSnapshot() throws Exception {
+    MavenModelGraph graph = new MavenModelGraph();
+    Path p1 = new Path("/p1/pom.xml");
+    ArtifactKey a = ArtifactKey.get("test", "a", "1.0");
+    graph.addDependency(p1, a);
+
+    MavenModelGraph.Snapshot snapshot = graph.getSnapshot();
+    assertSame(snapshot, graph.getSnapshot());
+
+    // single key reads don't invalidate the snapshot
+    graph.getDependentProjects(a);
+    graph.getModel(p1);
+    assertSame(snapshot, graph.getSnapshot());
+
+    graph.addDependency(new Path("/p2/pom.xml"), a);
+    assertNotSame(snapshot, graph.getSnapshot());
+    assertEquals(set(new Object[] {p1}), snapshot.getDependentProjects(a));
+    assertEquals(2, graph.getSnapshot().getDependentProjects(a).size());
+  }
+
+  public void testConcurrentUpdates() throws Exception {
+    final MavenModelGraph graph = new MavenModelGraph();
+    final int projects = 20;
+    final int artifacts = 50;
+    final List errors = new ArrayList();
+    Thread[] threads = new Thread[8];
+    for(int i = 0; i < threads.length; i++ ) {
+      final int n = i;
+      threads[i] = new Thread() {
+        public void run() {
+          try {
+            for(int j = 0; j < 200; j++ ) {
+              Path pomKey = new Path("/p" + ((n + j) % projects) + "/pom.xml");
+              if(j % 7 == 0) {
+                graph.removeDependencies(pomKey);
+              }
+              graph.addDependency(pomKey, ArtifactKey.get("test", "a" + ((n * j) % artifacts), "1.0"));
+              graph.getDependentProjects(ArtifactKey.get("test", "a" + (j % artifacts), "1.0"));
+              if(j % 20 == 0) {
+                graph.getSnapshot();
+              }
+            }
+          } catch(Throwable t) {
+            synchronized(errors) {
+              errors.add(t);
+            }
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for(int i = 0; i < threads.length; i++ ) {
+      threads[i].join();
+    }
+    assertEquals(errors.toString(), 0, errors.size());
+
+    // both directions of the graph are consistent
+    MavenModelGraph.Snapshot snapshot = graph.getSnapshot();
+    int dependencies = 0;
+    for(Iterator it = snapshot.getProjectsToArtifacts().entrySet().iterator(); it.hasNext();) {
+      Map.Entry e = (Map.Entry) it.next();
+      for(Iterator ait = ((Set) e.getValue()).iterator(); ait.hasNext();) {
+        Object artifactKey = ait.next();
+        assertTrue(snapshot.getDependentProjects(artifactKey).contains(e.getKey()));
+        assertTrue(graph.getDependentProjects(artifactKey).contains(e.getKey()));
+        dependencies++;
+      }
+    }
+    int reverse = 0;
+    for(int i = 0; i < artifacts; i++ ) {
+      reverse += graph.getDependentProjects(ArtifactKey.get("test", "a" + i, "1.0")).size();
+    }
+    assertEquals(dependencies, reverse);
+  }
+
+  private Model createModel(String artifactId, Model parentModel) {
+    Model model = new Model();
+    model.setGroupId("test");
+    model.setArtifactId(artifactId);
+    model.setVersion("1.0");
+    if(parentModel != null) {
+      Parent parent = new Parent();
+      parent.setGroupId(parentModel.getGroupId());
+      parent.setArtifactId(parentModel.getArtifactId());
+      parent.setVersion(parentModel.getVersion());
+      model.setParent(parent);
+    }
+    return model;
+  }
+
+  private static Set set(Object[] values) {
+    return new HashSet(Arrays.asList(values));
+  }
+
+}
@@ -24,6 +24,11 @@ import java.io.File;
 import junit.framework.TestCase;
 
 import org.apache.maven.execution.MavenExecutionResult;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Profile;
+import org.apache.maven.model.Repository;
 import org.apache.maven.project.MavenProject;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.maven.ide.eclipse.Maven2Plugin;
@@ -64,4 +69,69 @@ public class MavenModelManagerTest extends TestCase {
     assertNotNull(project);
   }
 
+  public void testDescriptionIsNotDependencyChange() throws Exception {
+    Model oldModel = createModel();
+    Model newModel = createModel();
+    newModel.setDescription("changed");
+    newModel.setName("changed");
+    assertFalse(MavenModelManager.isDependencyChange(oldModel, newModel));
+  }
+
+  public void testDependencyChange() throws Exception {
+    Model newModel = createModel();
+    ((Dependency) newModel.getDependencies().get(0)).setVersion("4.1");
+    assertTrue(MavenModelManager.isDependencyChange(createModel(), newModel));
+
+    newModel = createModel();
+    newModel.getProperties().setProperty("junit.version", "4.1");
+    assertTrue(MavenModelManager.isDependencyChange(createModel(), newModel));
+  }
+
+  public void testDependencyManagementChange() throws Exception {
+    Model newModel = createModel();
+    Dependency dependency = new Dependency();
+    dependency.setGroupId("junit");
+    dependency.setArtifactId("junit");
+    dependency.setVersion("4.1");
+    newModel.setDependencyManagement(new DependencyManagement());
+    newModel.getDependencyManagement().addDependency(dependency);
+    assertTrue(MavenModelManager.isDependencyChange(createModel(), newModel));
+  }
+
+  public void testProfilesChange() throws Exception {
+    Model newModel = createModel();
+    Profile profile = new Profile();
+    profile.setId("test");
+    profile.addDependency(createDependency("commons-logging", "1.1"));
+    newModel.addProfile(profile);
+    assertTrue(MavenModelManager.isDependencyChange(createModel(), newModel));
+  }
+
+  public void testRepositoriesChange() throws Exception {
+    Model newModel = createModel();
+    Repository repository = new Repository();
+    repository.setId("test");
+    repository.setUrl("http://localhost/repository");
+    newModel.addRepository(repository);
+    assertTrue(MavenModelManager.isDependencyChange(createModel(), newModel));
+  }
+
+  private Model createModel() {
+    Model model = new Model();
+    model.setGroupId("test");
+    model.setArtifactId("a");
+    model.setVersion("1.0");
+    model.setDescription("description");
+    model.addDependency(createDependency("junit", "3.8.1"));
+    return model;
+  }
+
+  private Dependency createDependency(String artifactId, String version) {
+    Dependency dependency = new Dependency();
+    dependency.setGroupId(artifactId);
+    dependency.setArtifactId(artifactId);
+    dependency.setVersion(version);
+    return dependency;
+  }
+
 }
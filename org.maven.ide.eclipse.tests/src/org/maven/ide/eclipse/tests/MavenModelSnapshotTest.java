@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.maven.ide.eclipse.tests;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Collections;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.jobs.Job;
+import org.maven.ide.eclipse.Maven2Plugin;
+import org.maven.ide.eclipse.embedder.BuildPathManager;
+import org.maven.ide.eclipse.embedder.MavenModelManager;
+import org.maven.ide.eclipse.embedder.ResolverConfiguration;
+
+
+/**
+ * Tests dependencies of the workspace projects restored on startup from the snapshot saved in the previous session.
+ * Each test saves a snapshot, changes the workspace and checks which projects are resolved again by a new manager.
+ */
+public class MavenModelSnapshotTest extends AsbtractMavenProjectTestCase {
+
+  private File stateLocation;
+
+  private IProject project;
+
+  private IProject parent;
+
+  private IProject child;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+    stateLocation = new File("target", getClass().getName());
+    new File(stateLocation, "workspaceModels.properties").delete();
+
+    BuildPathManager buildpathManager = Maven2Plugin.getDefault().getBuildpathManager();
+    project = createProject("resourcechange", "projects/resourcechange/pom.xml");
+    parent = createProject("resourcechange-parent", "projects/resourcechange/parent/pom.xml");
+    child = createProject("resourcechange-child", "projects/resourcechange/child/pom.xml");
+    buildpathManager.configureProject(project, new ResolverConfiguration(), new NullProgressMonitor());
+    buildpathManager.configureProject(parent, new ResolverConfiguration(), new NullProgressMonitor());
+    buildpathManager.configureProject(child, new ResolverConfiguration(), new NullProgressMonitor());
+    waitForJobsToComplete();
+  }
+
+  protected void tearDown() throws Exception {
+    // let background jobs of the restored managers complete
+    Job.getJobManager().resume();
+    waitForJobsToComplete();
+    super.tearDown();
+  }
+
+  public void testUnchanged() throws Exception {
+    saveSnapshot();
+
+    MavenModelManager modelManager = restoreSnapshot();
+    assertFalse(modelManager.isPendingProject(project));
+    assertFalse(modelManager.isPendingProject(parent));
+    assertFalse(modelManager.isPendingProject(child));
+  }
+
+  public void testChangedPom() throws Exception {
+    saveSnapshot();
+    copy(new File("projects/resourcechange/pom001.xml"), getPomFile(project));
+
+    MavenModelManager modelManager = restoreSnapshot();
+    assertTrue(modelManager.isPendingProject(project));
+    assertFalse(modelManager.isPendingProject(parent));
+    assertFalse(modelManager.isPendingProject(child));
+  }
+
+  public void testChangedParent() throws Exception {
+    saveSnapshot();
+    copy(new File("projects/resourcechange/parent/pom001.xml"), getPomFile(parent));
+
+    MavenModelManager modelManager = restoreSnapshot();
+    assertFalse(modelManager.isPendingProject(project));
+    assertTrue(modelManager.isPendingProject(parent));
+    assertTrue(modelManager.isPendingProject(child));
+  }
+
+  public void testChangedModificationTime() throws Exception {
+    saveSnapshot();
+    File pomFile = getPomFile(project);
+    assertTrue(pomFile.setLastModified(pomFile.lastModified() + 10000L));
+
+    // content hash is compared when size or modification time don't match
+    MavenModelManager modelManager = restoreSnapshot();
+    assertFalse(modelManager.isPendingProject(project));
+  }
+
+  public void testChangedConfiguration() throws Exception {
+    saveSnapshot();
+    Maven2Plugin.getDefault().getBuildpathManager().configureProject(project,
+        new ResolverConfiguration(false, true, "test"), new NullProgressMonitor());
+    waitForJobsToComplete();
+
+    MavenModelManager modelManager = restoreSnapshot();
+    assertTrue(modelManager.isPendingProject(project));
+    assertFalse(modelManager.isPendingProject(parent));
+  }
+
+  public void testChangedModule() throws Exception {
+    IProject modules = createProject("resourcechange-modules", "projects/resourcechange/modules/pom.xml");
+    IFolder folder = modules.getFolder("module");
+    folder.create(true, true, null);
+    IFile modulePom = folder.getFile(Maven2Plugin.POM_FILE_NAME);
+    InputStream contents = new FileInputStream("projects/resourcechange/modules/module/pom.xml");
+    modulePom.create(contents, true, null);
+    contents.close();
+    Maven2Plugin.getDefault().getBuildpathManager().configureProject(modules,
+        new ResolverConfiguration(true, true, ""), new NullProgressMonitor());
+    waitForJobsToComplete();
+
+    saveSnapshot();
+    copy(new File("projects/resourcechange/modules/module/pom001.xml"), modulePom.getLocation().toFile());
+
+    MavenModelManager modelManager = restoreSnapshot();
+    assertTrue(modelManager.isPendingProject(modules));
+    assertFalse(modelManager.isPendingProject(project));
+  }
+
+  public void testQueuedProjectNotSaved() throws Exception {
+    MavenModelManager modelManager = createModelManager();
+    modelManager.initModels(new NullProgressMonitor());
+    modelManager.addQueuedProjects(Collections.singleton(project));
+    modelManager.saveModels();
+
+    modelManager = restoreSnapshot();
+    assertTrue(modelManager.isPendingProject(project));
+    assertFalse(modelManager.isPendingProject(parent));
+  }
+
+  public void testPendingProjectNotSaved() throws Exception {
+    saveSnapshot();
+    copy(new File("projects/resourcechange/pom001.xml"), getPomFile(project));
+
+    // dependencies of the changed project are not resolved yet when snapshot is saved again
+    MavenModelManager modelManager = restoreSnapshot();
+    assertTrue(modelManager.isPendingProject(project));
+    modelManager.saveModels();
+    Job.getJobManager().resume();
+    waitForJobsToComplete();
+
+    modelManager = restoreSnapshot();
+    assertTrue(modelManager.isPendingProject(project));
+    assertFalse(modelManager.isPendingProject(parent));
+  }
+
+  /**
+   * Resolves all workspace projects with a new manager and saves its snapshot
+   */
+  private void saveSnapshot() {
+    MavenModelManager modelManager = createModelManager();
+    modelManager.initModels(new NullProgressMonitor());
+    modelManager.saveModels();
+  }
+
+  /**
+   * @return new manager initialized from the saved snapshot, stale projects are left pending
+   */
+  private MavenModelManager restoreSnapshot() {
+    MavenModelManager modelManager = createModelManager();
+
+    // background job resolving stale projects is not started until jobs are resumed
+    Job.getJobManager().suspend();
+    modelManager.initModels(new NullProgressMonitor());
+    return modelManager;
+  }
+
+  private MavenModelManager createModelManager() {
+    Maven2Plugin plugin = Maven2Plugin.getDefault();
+    return new MavenModelManager(plugin.getMavenEmbedderManager(), plugin.getMavenRepositoryIndexManager(), //
+        plugin.getConsole(), plugin.getPreferenceStore(), new Path(stateLocation.getAbsolutePath()));
+  }
+
+  private static File getPomFile(IProject project) {
+    return project.getFile(Maven2Plugin.POM_FILE_NAME).getLocation().toFile();
+  }
+
+}
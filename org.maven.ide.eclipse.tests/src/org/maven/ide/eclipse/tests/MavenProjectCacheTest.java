@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.maven.ide.eclipse.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.maven.ide.eclipse.embedder.MavenProjectCache;
+import org.maven.ide.eclipse.embedder.ResolverConfiguration;
+
+
+public class MavenProjectCacheTest extends AbstractFileTestCase {
+  private ResolverConfiguration configuration;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+    configuration = new ResolverConfiguration();
+  }
+
+  public void testPomChange() throws Exception {
+    File pomFile = createPom("a", "<project>a</project>");
+    MavenProjectCache cache = new MavenProjectCache();
+    MavenProject project = createProject("a", pomFile, new String[0]);
+    cache.put(pomFile, configuration, false, "repo", project);
+    assertSame(project, cache.get(pomFile, configuration, false, "repo"));
+
+    // other configuration
+    assertNull(cache.get(pomFile, configuration, true, "repo"));
+
+    cache.put(pomFile, configuration, false, "repo", project);
+    cache.pomChanged(pomFile, null);
+    assertSame(project, cache.get(pomFile, configuration, false, "repo"));
+
+    // same size and date, different content
+    long lastModified = pomFile.lastModified();
+    createPom("a", "<project>b</project>");
+    pomFile.setLastModified(lastModified);
+    assertNull(cache.get(pomFile, configuration, false, "repo"));
+  }
+
+  public void testParentPomChange() throws Exception {
+    File parentFile = createPom("parent", "<project>parent</project>");
+    File pomFile = createPom("a", "<project>a</project>");
+    MavenProject project = createProject("a", pomFile, new String[0]);
+    project.setParent(createProject("parent", parentFile, new String[0]));
+
+    MavenProjectCache cache = new MavenProjectCache();
+    cache.put(pomFile, configuration, false, "repo", project);
+    assertSame(project, cache.get(pomFile, configuration, false, "repo"));
+
+    createPom("parent", "<project>changed</project>");
+    assertNull(cache.get(pomFile, configuration, false, "repo"));
+  }
+
+  public void testInvalidateDependents() throws Exception {
+    File aFile = createPom("a", "<project>a</project>");
+    File bFile = createPom("b", "<project>b</project>");
+    File cFile = createPom("c", "<project>c</project>");
+    MavenProjectCache cache = new MavenProjectCache();
+    cache.put(aFile, configuration, false, "repo", createProject("a", aFile, new String[0]));
+    cache.put(bFile, configuration, false, "repo", createProject("b", bFile, new String[] {"a"}));
+    cache.put(cFile, configuration, false, "repo", createProject("c", cFile, new String[0]));
+
+    cache.invalidate(aFile, null);
+    assertNull(cache.get(aFile, configuration, false, "repo"));
+    assertNull(cache.get(bFile, configuration, false, "repo"));
+    assertNotNull(cache.get(cFile, configuration, false, "repo"));
+  }
+
+  public void testInvalidateUncachedPom() throws Exception {
+    File aFile = createPom("a", "<project>a</project>");
+    File bFile = createPom("b", "<project>b</project>");
+    File cFile = createPom("c", "<project>c</project>");
+    MavenProjectCache cache = new MavenProjectCache();
+    cache.put(bFile, configuration, false, "repo", createProject("b", bFile, new String[] {"a"}));
+    cache.put(cFile, configuration, false, "repo", createProject("c", cFile, new String[0]));
+
+    // e.g. after failed resolution of a
+    cache.pomChanged(aFile, "test:a");
+    assertNull(cache.get(bFile, configuration, false, "repo"));
+    assertNotNull(cache.get(cFile, configuration, false, "repo"));
+
+    cache.invalidate(aFile, null);
+    assertNull(cache.get(cFile, configuration, false, "repo"));
+  }
+
+  public void testClear() throws Exception {
+    File aFile = createPom("a", "<project>a</project>");
+    File bFile = createPom("b", "<project>b</project>");
+    MavenProjectCache cache = new MavenProjectCache();
+    cache.put(aFile, configuration, false, "repo", createProject("a", aFile, new String[0]));
+    cache.put(bFile, configuration, false, "repo", createProject("b", bFile, new String[0]));
+
+    // e.g. after Maven settings are changed
+    cache.clear();
+    assertNull(cache.get(aFile, configuration, false, "repo"));
+    assertNull(cache.get(bFile, configuration, false, "repo"));
+  }
+
+  public void testMaxEntries() throws Exception {
+    File aFile = createPom("a", "<project>a</project>");
+    File bFile = createPom("b", "<project>b</project>");
+    File cFile = createPom("c", "<project>c</project>");
+    MavenProjectCache cache = new MavenProjectCache(2);
+    cache.put(aFile, configuration, false, "repo", createProject("a", aFile, new String[0]));
+    cache.put(bFile, configuration, false, "repo", createProject("b", bFile, new String[0]));
+    assertNotNull(cache.get(aFile, configuration, false, "repo"));
+
+    cache.put(cFile, configuration, false, "repo", createProject("c", cFile, new String[0]));
+    assertNotNull(cache.get(aFile, configuration, false, "repo"));
+    assertNull(cache.get(bFile, configuration, false, "repo"));
+    assertNotNull(cache.get(cFile, configuration, false, "repo"));
+  }
+
+  private MavenProject createProject(String artifactId, File pomFile, String[] dependencies) {
+    Model model = new Model();
+    model.setGroupId("test");
+    model.setArtifactId(artifactId);
+    model.setVersion("1.0");
+
+    MavenProject project = new MavenProject(model);
+    project.setFile(pomFile);
+
+    Set artifacts = new HashSet();
+    for(int i = 0; i < dependencies.length; i++ ) {
+      artifacts.add(new DefaultArtifact("test", dependencies[i], VersionRange.createFromVersion("1.0"), "compile",
+          "jar", null, new DefaultArtifactHandler("jar")));
+    }
+    project.setArtifacts(artifacts);
+    return project;
+  }
+
+  private File createPom(String name, String content) throws IOException {
+    return createFile(name + ".xml", content);
+  }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.maven.ide.eclipse.tests;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.repository.DefaultArtifactRepository;
+import org.apache.maven.artifact.repository.layout.DefaultRepositoryLayout;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.eclipse.jface.preference.PreferenceStore;
+import org.maven.ide.eclipse.Maven2Plugin;
+import org.maven.ide.eclipse.embedder.MissingAttachmentCache;
+import org.maven.ide.eclipse.preferences.Maven2PreferenceConstants;
+
+
+public class MissingAttachmentCacheTest extends TestCase {
+  private File file;
+  private PreferenceStore preferenceStore;
+  private Artifact artifact;
+  private List repositories;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+    file = new File("target/missing-attachments-test/missingAttachments.properties");
+    file.delete();
+    preferenceStore = new PreferenceStore();
+    preferenceStore.setValue(Maven2PreferenceConstants.P_MISSING_ATTACHMENTS_TTL, 1);
+    artifact = new DefaultArtifact("test", "a", VersionRange.createFromVersion("1.0"), "compile", "jar", null,
+        new DefaultArtifactHandler("jar"));
+    repositories = Collections.singletonList(new DefaultArtifactRepository("central",
+        "http://repo1.maven.org/maven2", new DefaultRepositoryLayout()));
+  }
+
+  protected void tearDown() throws Exception {
+    file.delete();
+    file.getParentFile().delete();
+    super.tearDown();
+  }
+
+  public void testMissing() throws Exception {
+    MissingAttachmentCache cache = createCache();
+    assertFalse(cache.isMissing(artifact, "sources", repositories));
+
+    cache.setMissing(artifact, "sources", repositories);
+    assertTrue(cache.isMissing(artifact, "sources", repositories));
+    assertFalse(cache.isMissing(artifact, "javadoc", repositories));
+    assertFalse(cache.isMissing(artifact, "sources", Collections.EMPTY_LIST));
+  }
+
+  public void testSave() throws Exception {
+    MissingAttachmentCache cache = createCache();
+    cache.setMissing(artifact, "sources", repositories);
+    assertFalse(file.exists());
+
+    cache.save();
+    assertTrue(file.exists());
+    assertTrue(createCache().isMissing(artifact, "sources", repositories));
+  }
+
+  public void testExpiry() throws Exception {
+    MissingAttachmentCache cache = createCache();
+    cache.setMissing(artifact, "sources", repositories);
+    cache.save();
+
+    // found missing two hours ago
+    setTimestamp(System.currentTimeMillis() - 2 * 60L * 60L * 1000L);
+    cache = createCache();
+    assertFalse(cache.isMissing(artifact, "sources", repositories));
+
+    // expired entry is removed
+    cache.save();
+    assertTrue(loadEntries().isEmpty());
+  }
+
+  public void testExpiryAfterTtlChange() throws Exception {
+    MissingAttachmentCache cache = createCache();
+    cache.setMissing(artifact, "sources", repositories);
+    assertTrue(cache.isMissing(artifact, "sources", repositories));
+
+    preferenceStore.setValue(Maven2PreferenceConstants.P_MISSING_ATTACHMENTS_TTL, 0);
+    assertFalse(cache.isMissing(artifact, "sources", repositories));
+
+    preferenceStore.setValue(Maven2PreferenceConstants.P_MISSING_ATTACHMENTS_TTL, 1);
+    assertFalse(cache.isMissing(artifact, "sources", repositories));
+  }
+
+  public void testInvalidTimestamp() throws Exception {
+    MissingAttachmentCache cache = createCache();
+    cache.setMissing(artifact, "sources", repositories);
+    cache.save();
+
+    Properties entries = loadEntries();
+    for(Iterator it = entries.keySet().iterator(); it.hasNext();) {
+      entries.setProperty((String) it.next(), "invalid");
+    }
+    storeEntries(entries);
+
+    assertFalse(createCache().isMissing(artifact, "sources", repositories));
+  }
+
+  public void testClear() throws Exception {
+    MissingAttachmentCache cache = createCache();
+    cache.setMissing(artifact, "sources", repositories);
+    cache.save();
+
+    cache.clear();
+    assertFalse(cache.isMissing(artifact, "sources", repositories));
+    assertTrue(loadEntries().isEmpty());
+  }
+
+  private MissingAttachmentCache createCache() {
+    return new MissingAttachmentCache(file, preferenceStore, Maven2Plugin.getDefault().getConsole());
+  }
+
+  private void setTimestamp(long timestamp) throws Exception {
+    Properties entries = loadEntries();
+    assertFalse(entries.isEmpty());
+    for(Iterator it = entries.keySet().iterator(); it.hasNext();) {
+      entries.setProperty((String) it.next(), Long.toString(timestamp));
+    }
+    storeEntries(entries);
+  }
+
+  private Properties loadEntries() throws Exception {
+    Properties entries = new Properties();
+    InputStream is = new FileInputStream(file);
+    try {
+      entries.load(is);
+    } finally {
+      is.close();
+    }
+    return entries;
+  }
+
+  private void storeEntries(Properties entries) throws Exception {
+    OutputStream os = new FileOutputStream(file);
+    try {
+      entries.store(os, null);
+    } finally {
+      os.close();
+    }
+  }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.maven.ide.eclipse.tests;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.maven.ide.eclipse.Maven2Plugin;
+import org.maven.ide.eclipse.embedder.BuildPathManager;
+import org.maven.ide.eclipse.embedder.ResolverConfiguration;
+
+
+public class RefreshJobTest extends AsbtractMavenProjectTestCase {
+  private static final String JOB_NAME = "Maven classpath container refresh job";
+
+  private BuildPathManager buildpathManager;
+
+  private IProject project;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+    buildpathManager = Maven2Plugin.getDefault().getBuildpathManager();
+    deleteProject("resourcechange");
+    project = createProject("resourcechange", "projects/resourcechange/pom.xml");
+    buildpathManager.configureProject(project, new ResolverConfiguration(), new NullProgressMonitor());
+    waitForJobsToComplete();
+  }
+
+  public void testDebounce() throws Exception {
+    buildpathManager.scheduleUpdateClasspathContainer(project);
+    Thread.sleep(500L);
+    buildpathManager.scheduleUpdateClasspathContainer(project);
+    Thread.sleep(600L);
+
+    // quiet period is restarted by the second request
+    assertEquals(1, buildpathManager.getRefreshQueueDepth());
+    assertTrue(buildpathManager.getRefreshWaitTime() >= 1100L);
+
+    waitForJobsToComplete();
+    assertEquals(0, buildpathManager.getRefreshQueueDepth());
+    assertEquals(0, buildpathManager.getRefreshWaitTime());
+  }
+
+  public void testCoalescing() throws Exception {
+    IProject other = createProject("resourcechange-parent", "projects/resourcechange/parent/pom.xml");
+    buildpathManager.configureProject(other, new ResolverConfiguration(), new NullProgressMonitor());
+    waitForJobsToComplete();
+
+    buildpathManager.scheduleUpdateClasspathContainer(project);
+    buildpathManager.scheduleUpdateClasspathContainer(Arrays.asList(new IProject[] {other, project}));
+    buildpathManager.scheduleUpdateClasspathContainer(project);
+    assertEquals(2, buildpathManager.getRefreshQueueDepth());
+    assertTrue(Maven2Plugin.getDefault().getMavenModelManager().isQueuedProject(project));
+
+    waitForJobsToComplete();
+    assertEquals(0, buildpathManager.getRefreshQueueDepth());
+    assertFalse(Maven2Plugin.getDefault().getMavenModelManager().isQueuedProject(project));
+    assertFalse(Maven2Plugin.getDefault().getMavenModelManager().isQueuedProject(other));
+  }
+
+  public void testQueuedAgainWhileRunning() throws Exception {
+    buildpathManager.scheduleUpdateClasspathContainer(project);
+    waitForPass();
+
+    // running pass is outdated by the pom change
+    InputStream contents = new FileInputStream("projects/resourcechange/pom001.xml");
+    project.getFile("pom.xml").setContents(contents, IResource.NONE, null);
+    contents.close();
+
+    waitForJobsToComplete();
+    IClasspathEntry[] cp = getMavenContainerEntries(project);
+    assertEquals(1, cp.length);
+    assertEquals("junit-4.1.jar", cp[0].getPath().lastSegment());
+    assertFalse(Maven2Plugin.getDefault().getMavenModelManager().isQueuedProject(project));
+  }
+
+  public void testCancel() throws Exception {
+    buildpathManager.scheduleUpdateClasspathContainer(project);
+    Job job = waitForPass();
+    if(job != null) {
+      job.cancel();
+    }
+
+    waitForJobsToComplete();
+    assertEquals(0, buildpathManager.getRefreshQueueDepth());
+    assertFalse(Maven2Plugin.getDefault().getMavenModelManager().isQueuedProject(project));
+  }
+
+  /**
+   * Waits until queued projects are taken by the refresh pass. Pass may already be completed when this returns.
+   */
+  private Job waitForPass() throws InterruptedException {
+    long timeout = System.currentTimeMillis() + 30000L;
+    while(buildpathManager.getRefreshQueueDepth() > 0) {
+      assertTrue("Refresh pass has not been started", System.currentTimeMillis() < timeout);
+      Thread.sleep(5L);
+    }
+    return findJob(Job.getJobManager().find(null), JOB_NAME);
+  }
+
+}
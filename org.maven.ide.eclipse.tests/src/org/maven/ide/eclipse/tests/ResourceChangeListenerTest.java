@@ -19,9 +19,13 @@
 
 package org.maven.ide.eclipse.tests;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.util.Collections;
+import java.util.Set;
 
+import org.apache.maven.model.Model;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
@@ -30,8 +34,13 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.jdt.core.IClasspathContainer;
 import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
 import org.maven.ide.eclipse.Maven2Plugin;
+import org.maven.ide.eclipse.embedder.BuildPathManager;
+import org.maven.ide.eclipse.embedder.MavenModelManager;
 import org.maven.ide.eclipse.embedder.ResolverConfiguration;
 
 
@@ -49,6 +58,8 @@ public class ResourceChangeListenerTest extends AsbtractMavenProjectTestCase {
 
   protected void tearDown() throws Exception {
     workspace.getRoot().getProject("resourcechange").delete(true, null);
+    workspace.getRoot().getProject("resourcechange-parent").delete(true, null);
+    workspace.getRoot().getProject("resourcechange-child").delete(true, null);
     super.tearDown();
   }
 
@@ -76,6 +87,81 @@ public class ResourceChangeListenerTest extends AsbtractMavenProjectTestCase {
     assertEquals("junit-4.1.jar", cp[0].getPath().lastSegment());
   }
 
+  public void testDescriptionOnlyChange() throws Exception {
+    IJavaProject javaProject = JavaCore.create(project);
+    IClasspathContainer container = BuildPathManager.getMaven2ClasspathContainer(javaProject);
+
+    // modify
+    InputStream contents = new FileInputStream("projects/resourcechange/pom002.xml");
+    project.getFile("pom.xml").setContents(contents, IResource.NONE, null);
+    contents.close();
+
+    // assert container has not been refreshed
+    waitForJobsToComplete();
+    assertSame(container, BuildPathManager.getMaven2ClasspathContainer(javaProject));
+  }
+
+  public void testIsClasspathChanged() throws Exception {
+    MavenModelManager modelManager = Maven2Plugin.getDefault().getMavenModelManager();
+    IFile pom = project.getFile("pom.xml");
+    assertFalse(modelManager.isClasspathChanged(pom));
+
+    // pom which has not been read
+    assertTrue(modelManager.isClasspathChanged(project.getFile("pom001.xml")));
+
+    // files are changed behind workspace back so the listener does not refresh the project
+    File pomFile = pom.getLocation().toFile();
+    copy(new File("projects/resourcechange/pom002.xml"), pomFile);
+    assertFalse(modelManager.isClasspathChanged(pom));
+
+    copy(new File("projects/resourcechange/pom001.xml"), pomFile);
+    assertTrue(modelManager.isClasspathChanged(pom));
+  }
+
+  public void testParentDependencyManagementChange() throws Exception {
+    IProject parent = createProject("resourcechange-parent", "projects/resourcechange/parent/pom.xml");
+    IProject child = createProject("resourcechange-child", "projects/resourcechange/child/pom.xml");
+    Maven2Plugin.getDefault().getBuildpathManager().configureProject(parent, new ResolverConfiguration(), new NullProgressMonitor());
+    Maven2Plugin.getDefault().getBuildpathManager().configureProject(child, new ResolverConfiguration(), new NullProgressMonitor());
+    waitForJobsToComplete();
+
+    IClasspathEntry[] cp = getMavenContainerEntries(child);
+    assertEquals(1, cp.length);
+    assertEquals("junit-3.8.1.jar", cp[0].getPath().lastSegment());
+
+    // modify managed version in the parent
+    InputStream contents = new FileInputStream("projects/resourcechange/parent/pom001.xml");
+    parent.getFile("pom.xml").setContents(contents, IResource.NONE, null);
+    contents.close();
+
+    // assert
+    waitForJobsToComplete();
+    cp = getMavenContainerEntries(child);
+    assertEquals(1, cp.length);
+    assertEquals("junit-4.1.jar", cp[0].getPath().lastSegment());
+  }
+
+  public void testAffectedProjects() throws Exception {
+    IProject parent = createProject("resourcechange-parent", "projects/resourcechange/parent/pom.xml");
+    IProject child = createProject("resourcechange-child", "projects/resourcechange/child/pom.xml");
+    Maven2Plugin.getDefault().getBuildpathManager().configureProject(parent, new ResolverConfiguration(), new NullProgressMonitor());
+    Maven2Plugin.getDefault().getBuildpathManager().configureProject(child, new ResolverConfiguration(), new NullProgressMonitor());
+    waitForJobsToComplete();
+
+    MavenModelManager modelManager = Maven2Plugin.getDefault().getMavenModelManager();
+    IFile pom = parent.getFile("pom.xml");
+    Model oldModel = modelManager.getMavenModel(pom);
+
+    Model newModel = modelManager.readMavenModel(new File("projects/resourcechange/parent/pom001.xml"));
+    Set expected = Collections.singleton(child);
+    assertEquals(expected, modelManager.getAffectedProjects(pom, oldModel, newModel));
+    assertEquals(expected, modelManager.getAffectedProjects(pom, oldModel, null));
+
+    newModel = modelManager.readMavenModel(new File("projects/resourcechange/parent/pom.xml"));
+    newModel.setDescription("Description only change");
+    assertTrue(modelManager.getAffectedProjects(pom, oldModel, newModel).isEmpty());
+  }
+
   public void testPomMove001() throws Exception {
     // setup some more
     workspace.run(new IWorkspaceRunnable() {
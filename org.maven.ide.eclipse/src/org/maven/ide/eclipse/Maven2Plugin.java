@@ -94,13 +94,15 @@ public class Maven2Plugin extends AbstractUIPlugin implements IStartup {
 
     this.mavenEmbedderManager = new MavenEmbedderManager(console, getPreferenceStore());
 
-    this.mavenRepositoryIndexManager = new MavenRepositoryIndexManager(mavenEmbedderManager, console, getStateLocation());
+    this.mavenRepositoryIndexManager = new MavenRepositoryIndexManager(mavenEmbedderManager, console, getStateLocation(),
+        getPreferenceStore());
 
-    this.mavenModelManager = new MavenModelManager(mavenEmbedderManager, mavenRepositoryIndexManager, console, getPreferenceStore());
+    this.mavenModelManager = new MavenModelManager(mavenEmbedderManager, mavenRepositoryIndexManager, console,
+        getPreferenceStore(), getStateLocation());
     // this.mavenModelManager.initMavenModel(new NullProgressMonitor());
     
     this.buildpathManager = new BuildPathManager(mavenEmbedderManager, console, mavenModelManager,
-        mavenRepositoryIndexManager, getPreferenceStore());
+        mavenRepositoryIndexManager, getPreferenceStore(), getStateLocation());
     
     this.resourceChangeListener = new Maven2ResourceChangeListener(mavenModelManager, buildpathManager, console);
     
@@ -120,6 +122,10 @@ public class Maven2Plugin extends AbstractUIPlugin implements IStartup {
     
     ResourcesPlugin.getWorkspace().removeResourceChangeListener(resourceChangeListener);
     
+    this.mavenModelManager.saveModels();
+    this.buildpathManager.saveState();
+
+    this.mavenRepositoryIndexManager.shutdown();
     this.mavenEmbedderManager.shutdown();
     
     if (this.console != null) {
@@ -97,7 +97,9 @@ final class Maven2ResourceChangeListener implements IResourceChangeListener {
         return;
       IFile pomFile = project.getFile(Maven2Plugin.POM_FILE_NAME);
       if(pomFile != null) {
-        final Set projects = mavenModelManager.getDependentProjects(pomFile);
+        buildpathManager.invalidateMavenProject(pomFile);
+        final Set projects = mavenModelManager.getAffectedProjects(pomFile, mavenModelManager.getMavenModel(pomFile),
+            null);
         mavenModelManager.removeMavenModel(pomFile, true, new NullProgressMonitor());
         buildpathManager.scheduleUpdateClasspathContainer(projects);
       }
@@ -107,6 +109,8 @@ final class Maven2ResourceChangeListener implements IResourceChangeListener {
   }
 
   private void refresh(IProject project) {
-    buildpathManager.scheduleUpdateClasspathContainer(project);
+    buildpathManager.pomFileChanged(project.getFile(Maven2Plugin.POM_FILE_NAME));
+    // pom is compared with the resolved model by the refresh job
+    buildpathManager.schedulePomFileChanged(project);
   }
 }
@@ -19,7 +19,6 @@
 
 package org.maven.ide.eclipse.actions;
 
-import java.io.File;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -65,6 +64,8 @@ import org.eclipse.ui.dialogs.SelectionStatusDialog;
 import org.maven.ide.eclipse.Maven2Plugin;
 import org.maven.ide.eclipse.index.Indexer;
 import org.maven.ide.eclipse.index.Indexer.FileInfo;
+import org.maven.ide.eclipse.index.Indexer.SearchResult;
+import org.maven.ide.eclipse.index.MavenRepositoryIndexManager;
 
 
 /**
@@ -272,8 +273,8 @@ public class Maven2RepositorySearchDialog extends SelectionStatusDialog {
   protected void scheduleSearch(String query) {
     if(query != null && query.length() > 0) {
       if(searchJob == null) {
-        File[] indexes = Maven2Plugin.getDefault().getMavenRepositoryIndexManager().getIndexes();
-        searchJob = new SearchJob(queryField, indexes, this);
+        MavenRepositoryIndexManager indexManager = Maven2Plugin.getDefault().getMavenRepositoryIndexManager();
+        searchJob = new SearchJob(queryField, indexManager, this);
       }
 
       searchJob.setQuery(query.toLowerCase());
@@ -290,11 +291,12 @@ public class Maven2RepositorySearchDialog extends SelectionStatusDialog {
   }
 
   private static class SearchJob extends Job {
-    final Maven2RepositorySearchDialog dialog;
+    /** maximum number of artifacts shown in the search results */
+    private static final int MAX_RESULTS = 200;
 
-    final Indexer indexer;
+    final Maven2RepositorySearchDialog dialog;
 
-    private File[] indexes;
+    final MavenRepositoryIndexManager indexManager;
 
     private String query;
 
@@ -302,11 +304,10 @@ public class Maven2RepositorySearchDialog extends SelectionStatusDialog {
 
     boolean isRunning = false;
 
-    public SearchJob(String field, File[] indexes, Maven2RepositorySearchDialog dialog) {
+    public SearchJob(String field, MavenRepositoryIndexManager indexManager, Maven2RepositorySearchDialog dialog) {
       super("Repository search");
       this.field = field;
-      this.indexer = new Indexer();
-      this.indexes = indexes;
+      this.indexManager = indexManager;
       this.dialog = dialog;
     }
 
@@ -324,8 +325,12 @@ public class Maven2RepositorySearchDialog extends SelectionStatusDialog {
         String activeQuery = query;
         query = null;
         try {
-          Map res = indexer.search(indexes, activeQuery, field);
-          setResult(new Status(IStatus.OK, Maven2Plugin.PLUGIN_ID, -1, "Result for: " + activeQuery, null), res);
+          SearchResult res = indexManager.search(activeQuery, field, MAX_RESULTS);
+          String msg = "Result for: " + activeQuery;
+          if(res.moreResults > 0) {
+            msg += " (" + res.moreResults + " more matches, refine your query)";
+          }
+          setResult(new Status(IStatus.OK, Maven2Plugin.PLUGIN_ID, -1, msg, null), res.artifacts);
 
         } catch(final RuntimeException ex) {
           setResult(new Status(IStatus.ERROR, Maven2Plugin.PLUGIN_ID, -1, "Search error: " + ex.toString(), null),
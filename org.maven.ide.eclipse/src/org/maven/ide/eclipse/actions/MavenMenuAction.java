@@ -140,6 +140,8 @@ public class MavenMenuAction implements IObjectActionDelegate, IMenuCreator, IWo
           }
 
           addMenu("org.maven.ide.eclipse.updateSourcesAction", "Update Source Folders", new UpdateSourcesAction(), menu);
+          addMenu("org.maven.ide.eclipse.retryAttachmentsAction", "Retry Sources and JavaDoc Download",
+              new RetryAttachmentsAction(), menu);
           new Separator().fill(menu, -1);
           addMenu("org.maven.ide.eclipse.workspaceResolution", "Enable Workspace Resolution", new EnableNatureAction(
               "workspace"), menu);
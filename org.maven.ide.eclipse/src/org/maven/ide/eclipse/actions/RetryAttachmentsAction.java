@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.maven.ide.eclipse.actions;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IAdaptable;
+import org.eclipse.jface.action.IAction;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.ui.IObjectActionDelegate;
+import org.eclipse.ui.IWorkbenchPart;
+import org.maven.ide.eclipse.Maven2Plugin;
+
+
+/**
+ * Requests sources and javadoc archives that were previously not found in the remote repositories
+ */
+public class RetryAttachmentsAction implements IObjectActionDelegate {
+  private ISelection selection;
+
+  public void setActivePart(IAction action, IWorkbenchPart targetPart) {
+  }
+
+  public void selectionChanged(IAction action, ISelection selection) {
+    this.selection = selection;
+  }
+
+  public void run(IAction action) {
+    Set projects = new HashSet();
+    IStructuredSelection structuredSelection = (IStructuredSelection) selection;
+    for(Iterator it = structuredSelection.iterator(); it.hasNext();) {
+      Object element = it.next();
+      if(element instanceof IProject) {
+        projects.add(element);
+      } else if(element instanceof IAdaptable) {
+        IProject project = (IProject) ((IAdaptable) element).getAdapter(IProject.class);
+        if(project != null) {
+          projects.add(project);
+        }
+      }
+    }
+    Maven2Plugin.getDefault().getBuildpathManager().retryAttachments(projects);
+  }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.maven.ide.eclipse.container;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Properties;
+
+import org.maven.ide.eclipse.launch.console.Maven2Console;
+
+
+/**
+ * Persistent cache of the javadoc root folders inside javadoc archives. Entries are keyed by archive path and are
+ * valid while archive size and modification time are not changed. Changes are written to the file when
+ * {@link #save()} is called, e.g. at the end of the classpath refresh, and entries for deleted archives are dropped
+ * when the file is loaded.
+ */
+public class JavaDocRootCache {
+  private final File file;
+  private final Maven2Console console;
+
+  /** archive path -> size:lastModified:root */
+  private Properties entries;
+  private boolean changed = false;
+
+  public JavaDocRootCache(File file, Maven2Console console) {
+    this.file = file;
+    this.console = console;
+  }
+
+  /**
+   * @return javadoc root folder in the archive or null if archive is not in the cache or has been changed
+   */
+  public synchronized String get(File archive) {
+    String value = getEntries().getProperty(archive.getAbsolutePath());
+    if(value == null) {
+      return null;
+    }
+
+    String prefix = getPrefix(archive);
+    if(!value.startsWith(prefix)) {
+      return null;
+    }
+    return value.substring(prefix.length());
+  }
+
+  public synchronized void put(File archive, String root) {
+    getEntries().setProperty(archive.getAbsolutePath(), getPrefix(archive) + root);
+    changed = true;
+  }
+
+  public synchronized void save() {
+    if(!changed) {
+      return;
+    }
+
+    try {
+      file.getParentFile().mkdirs();
+      OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+      try {
+        getEntries().store(os, null);
+      } finally {
+        os.close();
+      }
+      changed = false;
+    } catch(IOException ex) {
+      console.logError("Unable to write " + file.getAbsolutePath() + "; " + ex.getMessage());
+    }
+  }
+
+  private static String getPrefix(File archive) {
+    return archive.length() + ":" + archive.lastModified() + ":";
+  }
+
+  private Properties getEntries() {
+    if(entries == null) {
+      entries = new Properties();
+      if(file.exists()) {
+        try {
+          InputStream is = new BufferedInputStream(new FileInputStream(file));
+          try {
+            entries.load(is);
+          } finally {
+            is.close();
+          }
+        } catch(IOException ex) {
+          console.logError("Unable to read " + file.getAbsolutePath() + "; " + ex.getMessage());
+        }
+
+        for(Iterator it = entries.keySet().iterator(); it.hasNext();) {
+          if(!new File((String) it.next()).exists()) {
+            it.remove();
+            changed = true;
+          }
+        }
+      }
+    }
+    return entries;
+  }
+
+}
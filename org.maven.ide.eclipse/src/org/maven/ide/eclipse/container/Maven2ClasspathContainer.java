@@ -84,28 +84,38 @@ public class Maven2ClasspathContainer implements IClasspathContainer {
     return path; 
   }
 
-  public static String getJavaDocUrl(String fileName) {
+  public static String getJavaDocUrl(String fileName, JavaDocRootCache javaDocRoots) {
     try {
       URL fileUrl = new File(fileName).toURL();
-      return "jar:"+fileUrl.toExternalForm()+"!/"+Maven2ClasspathContainer.getJavaDocPathInArchive(fileName);
+      return "jar:"+fileUrl.toExternalForm()+"!/"+getJavaDocPathInArchive(fileName, javaDocRoots);
     } catch(MalformedURLException ex) {
       return null;
     }
   }
   
-  private static String getJavaDocPathInArchive(String name) {
+  private static String getJavaDocPathInArchive(String name, JavaDocRootCache javaDocRoots) {
+    File file = new File(name);
+    String root = javaDocRoots.get(file);
+    if(root != null) {
+      return root;
+    }
+
     long l1 = System.currentTimeMillis();
     ZipFile jarFile = null;
     try {
       jarFile = new ZipFile(name);
+      root = "";
       String marker = "package-list";
       for(Enumeration en = jarFile.entries(); en.hasMoreElements();) {
         ZipEntry entry = (ZipEntry) en.nextElement();
         String entryName = entry.getName();
         if(entryName.endsWith(marker)) {
-          return entry.getName().substring(0, entryName.length()-marker.length());
+          root = entry.getName().substring(0, entryName.length()-marker.length());
+          break;
         }
       }
+      javaDocRoots.put(file, root);
+      return root;
     } catch(IOException ex) {
       // ignore
     } finally {
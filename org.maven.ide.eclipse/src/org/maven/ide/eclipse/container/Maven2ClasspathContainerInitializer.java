@@ -108,9 +108,11 @@ public class Maven2ClasspathContainerInitializer extends ClasspathContainerIniti
     }
 
     Display display = Maven2Plugin.getDefault().getWorkbench().getDisplay();
+    JavaDocRootCache javaDocRoots = Maven2Plugin.getDefault().getBuildpathManager().getJavaDocRootCache();
     BundleUpdater bundleUpdater = new BundleUpdater(display, currentContainer.getClasspathEntries(),
-        containerSuggestion.getClasspathEntries());
+        containerSuggestion.getClasspathEntries(), javaDocRoots);
     display.syncExec(bundleUpdater);
+    javaDocRoots.save();
 
     if(bundleUpdater.containerUpdated) {
       try {
@@ -124,15 +126,18 @@ public class Maven2ClasspathContainerInitializer extends ClasspathContainerIniti
   
   static final class BundleUpdater implements Runnable {
     private final Display display;
+    private final JavaDocRootCache javaDocRoots;
     IClasspathEntry[] newEntries;
     IClasspathEntry[] oldEntries;
     
     boolean containerUpdated = false;
 
-    BundleUpdater(Display display, IClasspathEntry[] oldEntries, IClasspathEntry[] newEntries) {
+    BundleUpdater(Display display, IClasspathEntry[] oldEntries, IClasspathEntry[] newEntries,
+        JavaDocRootCache javaDocRoots) {
       this.display = display;
       this.oldEntries = oldEntries;
       this.newEntries = newEntries;
+      this.javaDocRoots = javaDocRoots;
     }
 
     public void run() {
@@ -175,7 +180,8 @@ public class Maven2ClasspathContainerInitializer extends ClasspathContainerIniti
             
             if(newJavaDocValue!=null) {
               newAttributes.add(JavaCore.newClasspathAttribute( IClasspathAttribute.JAVADOC_LOCATION_ATTRIBUTE_NAME,
-                  Maven2ClasspathContainer.getJavaDocUrl(getTargetFile(entryPath, Maven2Plugin.JAVADOC_CLASSIFIER).getAbsolutePath())));
+                  Maven2ClasspathContainer.getJavaDocUrl(getTargetFile(entryPath, Maven2Plugin.JAVADOC_CLASSIFIER).getAbsolutePath(),
+                  javaDocRoots)));
             }
           }
           
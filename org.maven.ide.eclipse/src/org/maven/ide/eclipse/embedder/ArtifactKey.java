@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.maven.ide.eclipse.embedder;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+
+
+/**
+ * Key of the artifact in the workspace model graph. Hash code is calculated only once. Keys used for lookups are
+ * not shared, while keys stored in the graph are interned, so equal stored keys share a single instance. Intern table
+ * is partitioned into stripes by hash code, so concurrent resolvers don't contend on a single lock.
+ */
+public final class ArtifactKey {
+  private static final String UNKNOWN = "[unknown]";
+
+  private static final int STRIPES = 16;
+
+  /** each stripe is ArtifactKey -> WeakReference to the canonical ArtifactKey */
+  private static final Map[] keys = new Map[STRIPES];
+
+  static {
+    for(int i = 0; i < keys.length; i++ ) {
+      keys[i] = new WeakHashMap();
+    }
+  }
+
+  private final String groupId;
+  private final String artifactId;
+  private final String version;
+  private final int hash;
+
+  private ArtifactKey(String groupId, String artifactId, String version) {
+    this.groupId = groupId;
+    this.artifactId = artifactId;
+    this.version = version;
+    this.hash = 31 * (31 * hashCode(groupId) + hashCode(artifactId)) + hashCode(version);
+  }
+
+  public static ArtifactKey get(String groupId, String artifactId, String version) {
+    return new ArtifactKey(groupId, artifactId, version);
+  }
+
+  public static ArtifactKey get(Artifact a) {
+    return get(a.getGroupId(), a.getArtifactId(), a.getVersion());
+  }
+
+  public static ArtifactKey get(Parent parent) {
+    return get(parent.getGroupId(), parent.getArtifactId(), parent.getVersion());
+  }
+
+  public static ArtifactKey get(Model model) {
+    String groupId = model.getGroupId();
+    if(groupId == null) {
+      // If the groupId is null in the model, then it needs to be inherited
+      // from the parent.  And the parent's groupId has to be specified in the
+      // in the parent element of the model.
+      groupId = model.getParent() == null ? UNKNOWN : model.getParent().getGroupId();
+    }
+
+    String version = model.getVersion();
+    if(version == null) {
+      version = model.getParent() == null ? UNKNOWN : model.getParent().getVersion();
+    }
+
+    return get(groupId, model.getArtifactId(), version);
+  }
+
+  /**
+   * @param key string in groupId:artifactId:version format, as returned by {@link #toString()}
+   * @return key or null if string is not in the expected format
+   */
+  public static ArtifactKey parse(String key) {
+    int n1 = key.indexOf(':');
+    int n2 = key.lastIndexOf(':');
+    if(n1 == -1 || n1 == n2) {
+      return null;
+    }
+    return get(key.substring(0, n1), key.substring(n1 + 1, n2), key.substring(n2 + 1));
+  }
+
+  /**
+   * @return canonical instance of this key, should be used for keys stored in the long living maps
+   */
+  public ArtifactKey intern() {
+    Map stripe = keys[(hash & 0x7fffffff) % keys.length];
+    synchronized(stripe) {
+      WeakReference ref = (WeakReference) stripe.get(this);
+      ArtifactKey canonical = ref == null ? null : (ArtifactKey) ref.get();
+      if(canonical == null) {
+        stripe.put(this, new WeakReference(this));
+        canonical = this;
+      }
+      return canonical;
+    }
+  }
+
+  public String getGroupId() {
+    return groupId;
+  }
+
+  public String getArtifactId() {
+    return artifactId;
+  }
+
+  public String getVersion() {
+    return version;
+  }
+
+  public int hashCode() {
+    return hash;
+  }
+
+  public boolean equals(Object o) {
+    if(this == o) {
+      return true;
+    }
+    if(!(o instanceof ArtifactKey)) {
+      return false;
+    }
+    ArtifactKey other = (ArtifactKey) o;
+    return hash == other.hash && equals(groupId, other.groupId) && equals(artifactId, other.artifactId)
+        && equals(version, other.version);
+  }
+
+  public String toString() {
+    return groupId + ":" + artifactId + ":" + version;
+  }
+
+  private static int hashCode(String s) {
+    return s == null ? 0 : s.hashCode();
+  }
+
+  private static boolean equals(String s1, String s2) {
+    return s1 == null ? s2 == null : s1.equals(s2);
+  }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.maven.ide.eclipse.embedder;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.maven.model.Model;
+
+import org.eclipse.core.runtime.CoreException;
+
+
+/**
+ * Bounded cache of the summary data read from the artifact poms in the local repository. Summary is reused while
+ * size and modification time of the pom are not changed, so poms shared by several projects are parsed only once.
+ */
+public class ArtifactPomCache {
+  /** default max number of cached poms */
+  private static final int MAX_ENTRIES = 2000;
+
+  private final MavenModelManager mavenModelManager;
+
+  /** pom file path -> PomSummary, in access order */
+  private final Map entries;
+
+  public ArtifactPomCache(MavenModelManager mavenModelManager) {
+    this(mavenModelManager, MAX_ENTRIES);
+  }
+
+  public ArtifactPomCache(MavenModelManager mavenModelManager, final int maxEntries) {
+    this.mavenModelManager = mavenModelManager;
+    this.entries = new LinkedHashMap(256, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      protected boolean removeEldestEntry(Map.Entry eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * @return summary of the given pom or null if pom does not exist
+   */
+  public PomSummary get(File pomFile) throws CoreException {
+    String path = pomFile.getAbsolutePath();
+    long lastModified = pomFile.lastModified();
+    long size = pomFile.length();
+    if(lastModified == 0L) {
+      synchronized(entries) {
+        entries.remove(path);
+      }
+      return null;
+    }
+
+    synchronized(entries) {
+      PomSummary summary = (PomSummary) entries.get(path);
+      if(summary != null && summary.lastModified == lastModified && summary.size == size) {
+        return summary;
+      }
+    }
+
+    // pom is parsed outside of the lock, so concurrent resolvers are not blocked
+    PomSummary summary = new PomSummary(mavenModelManager.readMavenModel(pomFile), lastModified, size);
+    synchronized(entries) {
+      entries.put(path, summary);
+    }
+    return summary;
+  }
+
+
+  /**
+   * Summary data of the artifact pom
+   */
+  public static final class PomSummary {
+    final long lastModified;
+    final long size;
+
+    private final String groupId;
+    private final String artifactId;
+    private final String version;
+    private final String packaging;
+    private final String url;
+
+    PomSummary(Model model, long lastModified, long size) {
+      this.lastModified = lastModified;
+      this.size = size;
+      this.groupId = model.getGroupId() == null && model.getParent() != null ? model.getParent().getGroupId()
+          : model.getGroupId();
+      this.artifactId = model.getArtifactId();
+      this.version = model.getVersion() == null && model.getParent() != null ? model.getParent().getVersion()
+          : model.getVersion();
+      this.packaging = model.getPackaging();
+      String url = model.getUrl();
+      this.url = url == null || url.trim().length() == 0 ? null : url.trim();
+    }
+
+    public String getGroupId() {
+      return groupId;
+    }
+
+    public String getArtifactId() {
+      return artifactId;
+    }
+
+    public String getVersion() {
+      return version;
+    }
+
+    public String getPackaging() {
+      return packaging;
+    }
+
+    /**
+     * @return trimmed project url or null if pom does not specify it
+     */
+    public String getUrl() {
+      return url;
+    }
+  }
+
+}
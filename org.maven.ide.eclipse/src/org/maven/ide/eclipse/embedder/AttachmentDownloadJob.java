@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.maven.ide.eclipse.embedder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.embedder.MavenEmbedder;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.maven.ide.eclipse.launch.console.Maven2Console;
+
+
+/**
+ * Downloads sources and javadoc archives for the resolved dependencies and schedules refresh of the classpath
+ * containers once downloads are completed. Archives are downloaded by several worker threads, each using its own
+ * embedder.
+ */
+class AttachmentDownloadJob extends Job {
+  /** max number of concurrent downloads */
+  private static final int MAX_DOWNLOADS = 4;
+
+  private final BuildPathManager buildPathManager;
+  private final MavenEmbedderManager embedderManager;
+  private final MissingAttachmentCache missingAttachments;
+  private final Maven2Console console;
+
+  /** artifact id -> AttachmentRequest */
+  private final Map queue = new LinkedHashMap();
+
+  public AttachmentDownloadJob(BuildPathManager buildPathManager, MavenEmbedderManager embedderManager,
+      MissingAttachmentCache missingAttachments, Maven2Console console) {
+    super("Downloading sources and javadoc");
+    this.buildPathManager = buildPathManager;
+    this.embedderManager = embedderManager;
+    this.missingAttachments = missingAttachments;
+    this.console = console;
+    setPriority(Job.LONG);
+  }
+
+  /**
+   * @param requests list of AttachmentRequest
+   */
+  public void queue(List requests) {
+    if(requests.isEmpty()) {
+      return;
+    }
+    synchronized(queue) {
+      for(Iterator it = requests.iterator(); it.hasNext();) {
+        AttachmentRequest request = (AttachmentRequest) it.next();
+        String key = request.artifact.getId();
+        AttachmentRequest queued = (AttachmentRequest) queue.get(key);
+        if(queued == null) {
+          queue.put(key, request);
+        } else {
+          queued.merge(request);
+        }
+      }
+    }
+    // running job will be rescheduled once it is done
+    schedule();
+  }
+
+  protected IStatus run(IProgressMonitor monitor) {
+    List requests;
+    synchronized(queue) {
+      requests = new ArrayList(queue.values());
+      queue.clear();
+    }
+    if(requests.isEmpty()) {
+      return Status.OK_STATUS;
+    }
+
+    monitor.beginTask(getName(), requests.size());
+    try {
+      // don't run more workers than pooled embedders
+      int threads = Math.min(Math.min(MAX_DOWNLOADS, embedderManager.getPoolSize()), requests.size());
+      new Downloader(requests).run(threads, monitor);
+      missingAttachments.save();
+
+      // containers are not patched here because they may be replaced by a concurrent refresh; the next
+      // refresh pass finds downloaded archives in the local repository and adds them to the new containers
+      buildPathManager.scheduleUpdateClasspathContainer(getUpdatedProjects(requests));
+
+    } finally {
+      monitor.done();
+    }
+    return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+  }
+
+  /**
+   * @return projects requesting attachments that have been downloaded
+   */
+  private Set getUpdatedProjects(List requests) {
+    Set projects = new LinkedHashSet();
+    for(Iterator it = requests.iterator(); it.hasNext();) {
+      AttachmentRequest request = (AttachmentRequest) it.next();
+      if(request.sourcePath != null || request.javadocPath != null) {
+        for(Iterator pit = request.projects.iterator(); pit.hasNext();) {
+          IProject project = (IProject) pit.next();
+          if(project.isAccessible()) {
+            projects.add(project);
+          }
+        }
+      }
+    }
+    return projects;
+  }
+
+
+  /**
+   * Downloads queued attachments using a pool of worker threads
+   */
+  private class Downloader {
+    private final LinkedList pending;
+    private int processed = 0;
+    /** number of running workers */
+    private int active;
+    private boolean canceled = false;
+    private AttachmentRequest current;
+
+    Downloader(List requests) {
+      this.pending = new LinkedList(requests);
+    }
+
+    public void run(int threads, IProgressMonitor monitor) {
+      int total = pending.size();
+      active = threads;
+      Thread[] workers = new Thread[threads];
+      for(int i = 0; i < workers.length; i++ ) {
+        workers[i] = new Thread(getName() + " #" + i) {
+          public void run() {
+            MavenEmbedderManager.clearBuildContext();
+            download();
+          }
+        };
+        workers[i].setDaemon(true);
+        workers[i].start();
+      }
+
+      try {
+        synchronized(this) {
+          int reported = 0;
+          while(processed < total && active > 0) {
+            if(monitor.isCanceled()) {
+              break;
+            }
+            try {
+              wait(500L);
+            } catch(InterruptedException ex) {
+              break;
+            }
+            if(current != null) {
+              monitor.subTask(current.artifact.getId());
+              current = null;
+            }
+            if(processed > reported) {
+              monitor.worked(processed - reported);
+              reported = processed;
+            }
+          }
+          canceled = true;
+        }
+
+      } finally {
+        for(int i = 0; i < workers.length; i++ ) {
+          try {
+            workers[i].join();
+          } catch(InterruptedException ex) {
+            // ignore
+          }
+        }
+      }
+    }
+
+    void download() {
+      MavenEmbedder embedder = embedderManager.checkoutEmbedder(MavenEmbedderManager.EMBEDDER_DEFAULT);
+      if(embedder == null) {
+        workerDone();
+        return;
+      }
+      try {
+        IProgressMonitor monitor = new NullProgressMonitor();
+        AttachmentRequest request;
+        while((request = next()) != null) {
+          try {
+            if(request.sources) {
+              request.sourcePath = BuildPathManager.ClasspathContainerResolver.materializeArtifactPath(embedder,
+                  request.remoteRepositories, request.artifact, "java-source", "sources", true, missingAttachments,
+                  console, monitor);
+            }
+            if(request.sourcePath == null && request.javadoc) {
+              request.javadocPath = BuildPathManager.ClasspathContainerResolver.materializeArtifactPath(embedder,
+                  request.remoteRepositories, request.artifact, "javadoc", "javadoc", true, missingAttachments,
+                  console, monitor);
+            }
+          } catch(Exception ex) {
+            console.logError("Unable to download attachments for " + request.artifact.getId() + "; " + ex.toString());
+          } finally {
+            done(request);
+          }
+        }
+      } finally {
+        embedderManager.releaseEmbedder(MavenEmbedderManager.EMBEDDER_DEFAULT, embedder);
+        workerDone();
+      }
+    }
+
+    private synchronized AttachmentRequest next() {
+      if(canceled || pending.isEmpty()) {
+        return null;
+      }
+      return (AttachmentRequest) pending.removeFirst();
+    }
+
+    private synchronized void done(AttachmentRequest request) {
+      processed++;
+      current = request;
+      notifyAll();
+    }
+
+    private synchronized void workerDone() {
+      active--;
+      notifyAll();
+    }
+  }
+
+
+  /**
+   * Sources and javadoc archives requested for the artifact
+   */
+  static final class AttachmentRequest {
+    final Artifact artifact;
+    final List remoteRepositories;
+    final Set projects = new HashSet();
+    boolean sources;
+    boolean javadoc;
+
+    IPath sourcePath;
+    IPath javadocPath;
+
+    AttachmentRequest(IProject project, Artifact artifact, List remoteRepositories, boolean sources, boolean javadoc) {
+      this.artifact = artifact;
+      this.remoteRepositories = remoteRepositories;
+      this.sources = sources;
+      this.javadoc = javadoc;
+      this.projects.add(project);
+    }
+
+    void merge(AttachmentRequest request) {
+      projects.addAll(request.projects);
+      sources |= request.sources;
+      javadoc |= request.javadoc;
+    }
+  }
+
+}
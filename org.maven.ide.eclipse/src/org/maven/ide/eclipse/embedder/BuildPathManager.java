@@ -25,6 +25,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -53,8 +54,10 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.jdt.core.ElementChangedEvent;
@@ -83,9 +86,9 @@ import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.InvalidArtifactRTException;
 import org.apache.maven.artifact.resolver.AbstractArtifactResolutionException;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
 import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
 import org.apache.maven.embedder.MavenEmbedder;
-import org.apache.maven.embedder.MavenEmbedderException;
 import org.apache.maven.execution.MavenExecutionRequest;
 import org.apache.maven.execution.MavenExecutionResult;
 import org.apache.maven.execution.ReactorManager;
@@ -101,6 +104,7 @@ import org.apache.maven.project.validation.ModelValidationResult;
 
 import org.maven.ide.eclipse.Maven2Plugin;
 import org.maven.ide.eclipse.Messages;
+import org.maven.ide.eclipse.container.JavaDocRootCache;
 import org.maven.ide.eclipse.container.Maven2ClasspathContainer;
 import org.maven.ide.eclipse.index.MavenRepositoryIndexManager;
 import org.maven.ide.eclipse.launch.console.Maven2Console;
@@ -128,16 +132,32 @@ public class BuildPathManager {
 
   private final RefreshJob refreshJob;
 
+  private final MavenProjectCache projectCache = new MavenProjectCache();
+
+  private final ArtifactPomCache artifactPomCache;
+
+  private final MissingAttachmentCache missingAttachments;
+
+  private final JavaDocRootCache javaDocRoots;
+
+  private final AttachmentDownloadJob attachmentJob;
+
   private String jdtVersion;
 
   public BuildPathManager(MavenEmbedderManager embedderManager, Maven2Console console,
-      MavenModelManager mavenModelManager, MavenRepositoryIndexManager indexManager, IPreferenceStore preferenceStore) {
+      MavenModelManager mavenModelManager, MavenRepositoryIndexManager indexManager, IPreferenceStore preferenceStore,
+      IPath stateLocation) {
     this.embedderManager = embedderManager;
     this.console = console;
     this.mavenModelManager = mavenModelManager;
     this.indexManager = indexManager;
     this.preferenceStore = preferenceStore;
     this.refreshJob = new RefreshJob(this, console);
+    this.artifactPomCache = new ArtifactPomCache(mavenModelManager);
+    File missingAttachmentsFile = new File(stateLocation.toFile(), "missingAttachments.properties");
+    this.missingAttachments = new MissingAttachmentCache(missingAttachmentsFile, preferenceStore, console);
+    this.javaDocRoots = new JavaDocRootCache(new File(stateLocation.toFile(), "javadocRoots.properties"), console);
+    this.attachmentJob = new AttachmentDownloadJob(this, embedderManager, missingAttachments, console);
   }
 
   public static IClasspathEntry getDefaultContainerEntry() {
@@ -206,10 +226,85 @@ public class BuildPathManager {
 
   public void updateClasspathContainer(IProject project, IProgressMonitor monitor) throws CoreException {
     monitor.setTaskName("Updating " + project.getName());
-    ClasspathContainerResolver updater = new ClasspathContainerResolver(embedderManager, mavenModelManager, console,
-        preferenceStore, monitor);
-    updater.resolve(project);
+    // explicit update should always resolve dependencies again
+    invalidateMavenProject(project.getFile(Maven2Plugin.POM_FILE_NAME));
+    ClasspathContainerResolver updater = createResolver(monitor);
+    try {
+      updater.resolve(project);
+    } finally {
+      updater.stop();
+    }
     setClasspathContainer(updater.getResolved(), monitor);
+    javaDocRoots.save();
+    attachmentJob.queue(updater.getAttachments());
+  }
+
+  ClasspathContainerResolver createResolver(IProgressMonitor monitor) {
+    return new ClasspathContainerResolver(embedderManager, mavenModelManager, console, preferenceStore, projectCache,
+        artifactPomCache, missingAttachments, javaDocRoots, monitor);
+  }
+
+  public JavaDocRootCache getJavaDocRootCache() {
+    return javaDocRoots;
+  }
+
+  /**
+   * Writes pending changes of the persistent caches
+   */
+  public void saveState() {
+    missingAttachments.save();
+    javaDocRoots.save();
+  }
+
+  /**
+   * Forgets sources and javadoc archives that were not found in remote repositories and refreshes given projects to
+   * request them again
+   * 
+   * @param projects Set of IProject
+   */
+  public void retryAttachments(Set projects) {
+    missingAttachments.clear();
+    scheduleUpdateClasspathContainer(projects);
+  }
+
+  /**
+   * Removes cached Maven project for the given pom and projects depending on it
+   */
+  public void invalidateMavenProject(IFile pomFile) {
+    IPath location = pomFile.getLocation();
+    if(location != null) {
+      projectCache.invalidate(location.toFile(), getProjectKey(pomFile));
+    }
+  }
+
+  /**
+   * Removes cached Maven project for the given pom and projects depending on it if pom content has been changed
+   */
+  public void pomFileChanged(IFile pomFile) {
+    IPath location = pomFile.getLocation();
+    if(location != null) {
+      projectCache.pomChanged(location.toFile(), getProjectKey(pomFile));
+    }
+  }
+
+  /**
+   * Flushes Maven settings and embedders and removes cached Maven projects resolved with the old settings
+   */
+  public void invalidateMavenSettings() {
+    embedderManager.invalidateMavenSettings();
+    projectCache.clear();
+  }
+
+  /**
+   * @return groupId:artifactId of the workspace model for the given pom, or null if pom has not been read
+   */
+  private String getProjectKey(IFile pomFile) {
+    Model model = mavenModelManager.getMavenModel(pomFile);
+    if(model == null) {
+      return null;
+    }
+    ArtifactKey key = ArtifactKey.get(model);
+    return key.getGroupId() + ":" + key.getArtifactId();
   }
 
   void setClasspathContainer(Map resolved, IProgressMonitor monitor) throws CoreException {
@@ -409,21 +504,24 @@ public class BuildPathManager {
       throw new OperationCanceledException();
     }
 
+    // XXX should use project embedder with resolving from workspace?
+    MavenEmbedder mavenEmbedder = embedderManager.checkoutEmbedder(MavenEmbedderManager.EMBEDDER_EXECUTION);
+    if(mavenEmbedder == null) {
+      return null;
+    }
+    try {
+      return collectSourceEntries(project, sourceEntries, sources, configuration, monitor, mavenEmbedder);
+    } finally {
+      embedderManager.releaseEmbedder(MavenEmbedderManager.EMBEDDER_EXECUTION, mavenEmbedder);
+    }
+  }
+
+  private MavenProject collectSourceEntries(IProject project, List sourceEntries, Set sources,
+      ResolverConfiguration configuration, IProgressMonitor monitor, MavenEmbedder mavenEmbedder) {
     Maven2Plugin plugin = Maven2Plugin.getDefault();
     IPreferenceStore preferenceStore = plugin.getPreferenceStore();
     boolean offline = preferenceStore.getBoolean(Maven2PreferenceConstants.P_OFFLINE);
     boolean debug = preferenceStore.getBoolean(Maven2PreferenceConstants.P_DEBUG_OUTPUT);
-    String globalSettings = preferenceStore.getString(Maven2PreferenceConstants.P_GLOBAL_SETTINGS_FILE);
-
-    MavenEmbedder mavenEmbedder;
-    try {
-      // XXX should use project embedder with resolving from workspace?
-      mavenEmbedder = EmbedderFactory.createMavenEmbedder(EmbedderFactory.createExecutionCustomizer(),
-          new PluginConsoleMavenEmbeddedLogger(console, debug), globalSettings);
-    } catch(MavenEmbedderException ex) {
-      console.logError("Unable to create embedder; " + ex.toString());
-      return null;
-    }
 
     IFile pomResource = project.getFile(Maven2Plugin.POM_FILE_NAME);
 
@@ -826,15 +924,62 @@ public class BuildPathManager {
     refreshJob.queueRefresh(projects);
   }
 
+  /**
+   * Schedules classpath container of the given project to be refreshed in a background job after its pom has been
+   * changed. Refresh is skipped if the changes don't affect the classpath. This method returns immediately.
+   */
+  public void schedulePomFileChanged(IProject project) {
+    refreshJob.queuePomChange(project);
+  }
+
+  /**
+   * @return number of projects waiting for the classpath container refresh
+   */
+  public int getRefreshQueueDepth() {
+    return refreshJob.getQueueDepth();
+  }
+
+  /**
+   * @return time in milliseconds the oldest project is waiting for the classpath container refresh
+   */
+  public long getRefreshWaitTime() {
+    return refreshJob.getWaitTime();
+  }
+
+  /**
+   * Refreshes classpath containers of the queued projects. Refresh is postponed until no new projects are queued for
+   * the quiet period, but no longer than the max delay since the oldest queued request, so a burst of pom changes is
+   * resolved in a single pass. Projects queued because of pom changes are resolved only if the changes can affect
+   * their classpath. Queued projects are resolved in dependency order and a pass that is already running is canceled
+   * when any of its projects is queued again.
+   */
   static class RefreshJob extends WorkspaceJob {
 
+    /** time without new requests before queued projects are refreshed */
     private static final long PROCESSING_DELAY = 1000L;
 
+    /** max time the oldest queued request can be postponed */
+    private static final long MAX_DELAY = 10000L;
+
     private final BuildPathManager buildPathManager;
 
     private final Maven2Console console;
 
-    private final ArrayList queue = new ArrayList();
+    private final Set queue = new LinkedHashSet();
+
+    /** queued projects which are refreshed only if their pom changes affect the classpath */
+    private final Set changedPoms = new HashSet();
+
+    /** time when the oldest queued project has been added */
+    private long firstQueued;
+
+    /** time when the last project has been added */
+    private long lastQueued;
+
+    /** projects resolved by the running pass */
+    private Set running;
+
+    private boolean passCanceled = false;
 
     public RefreshJob(BuildPathManager buildPathManager, Maven2Console console) {
       super("Maven classpath container refresh job");
@@ -842,48 +987,446 @@ public class BuildPathManager {
       this.console = console;
     }
 
-    public IStatus runInWorkspace(IProgressMonitor monitor) throws CoreException {
+    public IStatus runInWorkspace(final IProgressMonitor monitor) throws CoreException {
       while(true) {
-        Set projects = new LinkedHashSet();
+        Set queued;
+        Set changed;
+        long waitTime;
         synchronized(queue) {
-          projects.addAll(queue);
+          if(queue.isEmpty()) {
+            break;
+          }
+          long now = System.currentTimeMillis();
+          long delay = Math.min(lastQueued + PROCESSING_DELAY, firstQueued + MAX_DELAY) - now;
+          if(delay > 0) {
+            // more requests are coming
+            schedule(delay);
+            return Status.OK_STATUS;
+          }
+
+          waitTime = now - firstQueued;
+          queued = new LinkedHashSet(queue);
+          changed = new HashSet(changedPoms);
           queue.clear();
+          changedPoms.clear();
         }
-        if(projects.isEmpty()) {
-          break;
+
+        // projects queued again while poms are compared are left for the next pass
+        Set unchanged = getUnchangedProjects(changed);
+        queued.removeAll(unchanged);
+        List projects = buildPathManager.mavenModelManager.getResolutionOrder(queued);
+        synchronized(queue) {
+          unchanged.removeAll(queue);
+          buildPathManager.mavenModelManager.removeQueuedProjects(unchanged);
+          if(projects.isEmpty()) {
+            continue;
+          }
+          running = new HashSet(projects);
+          passCanceled = false;
         }
 
-        ClasspathContainerResolver resolver = new ClasspathContainerResolver(buildPathManager.embedderManager,
-            buildPathManager.mavenModelManager, buildPathManager.console, buildPathManager.preferenceStore, monitor);
-        
-        for(Iterator it = projects.iterator(); it.hasNext();) {
-          IProject project = (IProject) it.next();
+        if(buildPathManager.preferenceStore.getBoolean(Maven2PreferenceConstants.P_DEBUG_OUTPUT)) {
+          console.logMessage("Refreshing " + projects.size() + " projects queued " + waitTime + " ms ago");
+        }
+
+        IProgressMonitor passMonitor = new ProgressMonitorWrapper(monitor) {
+          public boolean isCanceled() {
+            return monitor.isCanceled() || isPassCanceled();
+          }
+        };
+
+        Map resolved;
+        List attachments;
+        int threads = buildPathManager.preferenceStore.getInt(Maven2PreferenceConstants.P_RESOLVER_THREADS);
+        if(threads > 1) {
+          ParallelResolver resolver = new ParallelResolver(buildPathManager, passMonitor);
+          resolved = resolver.resolve(new LinkedHashSet(projects), threads);
+          attachments = resolver.getAttachments();
+
+        } else {
+          ClasspathContainerResolver resolver = buildPathManager.createResolver(passMonitor);
           try {
-            resolver.resolve(project);
-          } catch(Exception e) {
-            console.logError("Unable to refresh classpath container: " + e);
+            for(Iterator it = projects.iterator(); it.hasNext();) {
+              IProject project = (IProject) it.next();
+              try {
+                resolver.resolve(project);
+              } catch(OperationCanceledException ex) {
+                break;
+              } catch(Exception e) {
+                console.logError("Unable to refresh classpath container: " + e);
+              }
+            }
+          } finally {
+            resolver.stop();
+          }
+          resolved = resolver.getResolved();
+          attachments = resolver.getAttachments();
+        }
+
+        if(monitor.isCanceled()) {
+          synchronized(queue) {
+            running = null;
+
+            // canceled projects are not refreshed until they are queued again, pom stamps tell if they are stale
+            Set canceled = new HashSet(projects);
+            canceled.removeAll(queue);
+            buildPathManager.mavenModelManager.removeQueuedProjects(canceled);
+          }
+          return Status.CANCEL_STATUS;
+        }
+
+        synchronized(queue) {
+          if(passCanceled) {
+            requeueUnresolved(projects, resolved);
           }
+          running = null;
+
+          Set done = new HashSet(resolved.keySet());
+          done.removeAll(queue);
+          buildPathManager.mavenModelManager.removeQueuedProjects(done);
         }
-        buildPathManager.setClasspathContainer(resolver.getResolved(), monitor);
+
+        buildPathManager.setClasspathContainer(resolved, monitor);
+        buildPathManager.javaDocRoots.save();
+        buildPathManager.attachmentJob.queue(attachments);
       }
       return Status.OK_STATUS;
     }
 
     public void queueRefresh(IProject project) {
-      synchronized(queue) {
-        queue.add(project);
-      }
-      schedule(PROCESSING_DELAY);
+      queueRefresh(Collections.singleton(project));
     }
 
     public void queueRefresh(Collection projects) {
       if(projects == null || projects.isEmpty())
         return;
       synchronized(queue) {
-        queue.addAll(projects);
+        changedPoms.removeAll(projects);
+        addToQueue(projects);
+      }
+      // running job will be rescheduled once it is done
+      schedule(PROCESSING_DELAY);
+    }
+
+    /**
+     * Queues refresh of the project which pom has been changed. Unlike {@link #queueRefresh(Collection)}, pom is
+     * compared with the model from the last resolution before the project is resolved.
+     */
+    public void queuePomChange(IProject project) {
+      Set projects = Collections.singleton(project);
+      synchronized(queue) {
+        if(!queue.contains(project)) {
+          changedPoms.add(project);
+        }
+        addToQueue(projects);
       }
+      // running job will be rescheduled once it is done
       schedule(PROCESSING_DELAY);
     }
+
+    private void addToQueue(Collection projects) {
+      long now = System.currentTimeMillis();
+      if(queue.isEmpty()) {
+        firstQueued = now;
+      }
+      lastQueued = now;
+      queue.addAll(projects);
+      buildPathManager.mavenModelManager.addQueuedProjects(projects);
+
+      if(running != null && !passCanceled) {
+        for(Iterator it = projects.iterator(); it.hasNext();) {
+          if(running.contains(it.next())) {
+            // results of the running pass are already outdated
+            passCanceled = true;
+            break;
+          }
+        }
+      }
+    }
+
+    /**
+     * @return number of projects waiting for the refresh
+     */
+    public int getQueueDepth() {
+      synchronized(queue) {
+        return queue.size();
+      }
+    }
+
+    /**
+     * @return time in milliseconds the oldest queued project is waiting for the refresh
+     */
+    public long getWaitTime() {
+      synchronized(queue) {
+        return queue.isEmpty() ? 0 : System.currentTimeMillis() - firstQueued;
+      }
+    }
+
+    boolean isPassCanceled() {
+      synchronized(queue) {
+        return passCanceled;
+      }
+    }
+
+    /**
+     * Compares poms of the given projects with the models from the last classpath resolution.
+     * 
+     * @return projects which classpath is not affected by changes in their poms
+     */
+    private Set getUnchangedProjects(Set projects) {
+      Set unchanged = new HashSet();
+      for(Iterator it = projects.iterator(); it.hasNext();) {
+        IProject project = (IProject) it.next();
+        if(!buildPathManager.mavenModelManager.isClasspathChanged(project.getFile(Maven2Plugin.POM_FILE_NAME))) {
+          unchanged.add(project);
+          if(buildPathManager.preferenceStore.getBoolean(Maven2PreferenceConstants.P_DEBUG_OUTPUT)) {
+            console.logMessage("Classpath of " + project.getName() + " is not affected by changes in "
+                + Maven2Plugin.POM_FILE_NAME);
+          }
+        }
+      }
+      return unchanged;
+    }
+
+    /**
+     * Puts projects of the canceled pass back to the queue. Projects queued again while the pass was running are
+     * dropped from the resolved ones and projects which could be affected by the resolved ones are queued too, because
+     * changes in their models are already recorded.
+     */
+    private void requeueUnresolved(List projects, Map resolved) {
+      Set unresolved = new LinkedHashSet(projects);
+      for(Iterator it = resolved.keySet().iterator(); it.hasNext();) {
+        IProject project = (IProject) it.next();
+        unresolved.addAll(buildPathManager.mavenModelManager.getDependentProjects( //
+            project.getFile(Maven2Plugin.POM_FILE_NAME)));
+      }
+      resolved.keySet().removeAll(queue);
+      unresolved.removeAll(resolved.keySet());
+
+      if(!unresolved.isEmpty()) {
+        if(queue.isEmpty()) {
+          firstQueued = System.currentTimeMillis();
+        }
+        queue.addAll(unresolved);
+      }
+    }
+  }
+
+  /**
+   * Resolves classpath containers using a pool of worker threads. Each worker uses its own
+   * {@link ClasspathContainerResolver} and embedders. A project is not resolved until all projects from the same
+   * batch it depends on are resolved. Dependent projects are added to the batch the same way
+   * {@link ClasspathContainerResolver#resolve(IProject)} does.
+   */
+  static class ParallelResolver {
+    private final BuildPathManager buildPathManager;
+    private final IProgressMonitor monitor;
+    
+    /** projects waiting to be resolved */
+    private final List pending = new ArrayList();
+    private final Set running = new HashSet();
+    private final Set done = new HashSet();
+    /** IProject -> Set of IProject from the current batch it depends on */
+    private final Map prerequisites = new HashMap();
+    /** IProject -> Set of dependent IProject */
+    private final Map dependents = new HashMap();
+    /** List of AttachmentDownloadJob.AttachmentRequest */
+    private final List attachments = new ArrayList();
+    
+    private boolean canceled = false;
+    private IProject currentProject;
+    private int processed = 0;
+
+    ParallelResolver(BuildPathManager buildPathManager, IProgressMonitor monitor) {
+      this.buildPathManager = buildPathManager;
+      this.monitor = monitor;
+    }
+
+    public Map resolve(Set projects, int threads) {
+      synchronized(this) {
+        for(Iterator it = projects.iterator(); it.hasNext();) {
+          add((IProject) it.next());
+        }
+      }
+
+      final ClasspathContainerResolver[] resolvers = new ClasspathContainerResolver[threads];
+      Thread[] workers = new Thread[threads];
+      for(int i = 0; i < workers.length; i++ ) {
+        resolvers[i] = buildPathManager.createResolver(new NullProgressMonitor() {
+          public boolean isCanceled() {
+            return ParallelResolver.this.isCanceled();
+          }
+        });
+        final ClasspathContainerResolver resolver = resolvers[i];
+        workers[i] = new Thread("Resolving classpath #" + i) {
+          public void run() {
+            MavenEmbedderManager.clearBuildContext();
+            try {
+              processQueue(resolver);
+            } finally {
+              resolver.stop();
+            }
+          }
+        };
+        workers[i].setDaemon(true);
+        workers[i].start();
+      }
+
+      try {
+        synchronized(this) {
+          while(!canceled && (!pending.isEmpty() || !running.isEmpty())) {
+            if(monitor.isCanceled()) {
+              canceled = true;
+              notifyAll();
+              break;
+            }
+            try {
+              wait(500L);
+            } catch(InterruptedException ex) {
+              canceled = true;
+              notifyAll();
+              break;
+            }
+            if(currentProject != null) {
+              monitor.subTask("resolving " + currentProject.getName() + " (" + processed + " of "
+                  + (processed + running.size() + pending.size()) + ")");
+              currentProject = null;
+            }
+          }
+        }
+
+      } finally {
+        for(int i = 0; i < workers.length; i++ ) {
+          try {
+            workers[i].join();
+          } catch(InterruptedException ex) {
+            // ignore
+          }
+        }
+      }
+
+      Map resolved = new LinkedHashMap();
+      for(int i = 0; i < resolvers.length; i++ ) {
+        resolved.putAll(resolvers[i].getResolved());
+        attachments.addAll(resolvers[i].getAttachments());
+      }
+      return resolved;
+    }
+
+    public List getAttachments() {
+      return attachments;
+    }
+
+    void processQueue(ClasspathContainerResolver resolver) {
+      IProject project;
+      while((project = nextProject()) != null) {
+        Set projectDependents = null;
+        try {
+          projectDependents = resolver.resolveProject(project);
+        } catch(OperationCanceledException ex) {
+          cancel();
+        } catch(Exception e) {
+          buildPathManager.console.logError("Unable to refresh classpath container: " + e);
+        } finally {
+          projectDone(project, projectDependents);
+        }
+      }
+    }
+
+    /**
+     * Adds project to the batch and links it with projects it depends on or projects that depend on it
+     */
+    private void add(IProject project) {
+      if(pending.contains(project) || running.contains(project) || done.contains(project)) {
+        return;
+      }
+
+      Set projectDependents = buildPathManager.mavenModelManager.getDependentProjects( //
+          project.getFile(Maven2Plugin.POM_FILE_NAME));
+      dependents.put(project, projectDependents);
+
+      Set projectPrerequisites = new HashSet();
+      for(Iterator it = dependents.entrySet().iterator(); it.hasNext();) {
+        Map.Entry e = (Map.Entry) it.next();
+        IProject p = (IProject) e.getKey();
+        if(!done.contains(p) && ((Set) e.getValue()).contains(project)) {
+          projectPrerequisites.add(p);
+        }
+      }
+      prerequisites.put(project, projectPrerequisites);
+
+      for(Iterator it = projectDependents.iterator(); it.hasNext();) {
+        Set s = (Set) prerequisites.get(it.next());
+        if(s != null) {
+          s.add(project);
+        }
+      }
+
+      pending.add(project);
+    }
+
+    private synchronized IProject nextProject() {
+      while(!canceled) {
+        if(pending.isEmpty() && running.isEmpty()) {
+          return null;
+        }
+
+        IProject next = null;
+        for(Iterator it = pending.iterator(); it.hasNext();) {
+          IProject p = (IProject) it.next();
+          if(((Set) prerequisites.get(p)).isEmpty()) {
+            next = p;
+            break;
+          }
+        }
+        if(next == null && running.isEmpty() && !pending.isEmpty()) {
+          // cyclic dependencies
+          next = (IProject) pending.get(0);
+        }
+
+        if(next != null) {
+          pending.remove(next);
+          running.add(next);
+          return next;
+        }
+
+        try {
+          wait();
+        } catch(InterruptedException ex) {
+          return null;
+        }
+      }
+      return null;
+    }
+
+    private synchronized void projectDone(IProject project, Set projectDependents) {
+      running.remove(project);
+      done.add(project);
+      processed++;
+      currentProject = project;
+
+      for(Iterator it = prerequisites.values().iterator(); it.hasNext();) {
+        ((Set) it.next()).remove(project);
+      }
+
+      if(projectDependents != null && !canceled) {
+        dependents.put(project, projectDependents);
+        for(Iterator it = projectDependents.iterator(); it.hasNext();) {
+          add((IProject) it.next());
+        }
+      }
+
+      notifyAll();
+    }
+
+    synchronized boolean isCanceled() {
+      return canceled;
+    }
+
+    private synchronized void cancel() {
+      canceled = true;
+      notifyAll();
+    }
   }
 
   
@@ -905,39 +1448,69 @@ public class BuildPathManager {
 
     private MavenEmbedder defaultEmbedder;
 
-    private final Map mavenProjects = new HashMap();
+    private final MavenProjectCache projectCache;
+
+    private final ArtifactPomCache artifactPomCache;
+
+    private final MissingAttachmentCache missingAttachments;
+
+    private final JavaDocRootCache javaDocRoots;
+
+    /** List of AttachmentDownloadJob.AttachmentRequest */
+    private final List attachments = new ArrayList();
     
     public ClasspathContainerResolver(MavenEmbedderManager embedderManager, MavenModelManager mavenModelManager, 
-        Maven2Console console, IPreferenceStore preferenceStore, IProgressMonitor monitor) {
+        Maven2Console console, IPreferenceStore preferenceStore, MavenProjectCache projectCache, 
+        ArtifactPomCache artifactPomCache, MissingAttachmentCache missingAttachments, JavaDocRootCache javaDocRoots,
+        IProgressMonitor monitor) {
       this.embedderManager = embedderManager;
       this.mavenModelManager = mavenModelManager;
       this.console = console;
       this.preferenceStore = preferenceStore;
+      this.projectCache = projectCache;
+      this.artifactPomCache = artifactPomCache;
+      this.missingAttachments = missingAttachments;
+      this.javaDocRoots = javaDocRoots;
       this.monitor = monitor;
     }
 
     public Map getResolved() {
       return resolved;
     }
+
+    /**
+     * @return sources and javadoc archives that should be downloaded for the resolved projects
+     */
+    public List getAttachments() {
+      return attachments;
+    }
     
+    /**
+     * Returns embedders used by this resolver back to the embedder pool
+     */
     public void stop() {
-      stopEmbedder(workspaceAwareEmbedder);
-      stopEmbedder(defaultEmbedder);
+      embedderManager.releaseEmbedder(MavenEmbedderManager.EMBEDDER_WORKSPACE, workspaceAwareEmbedder);
+      workspaceAwareEmbedder = null;
+      embedderManager.releaseEmbedder(MavenEmbedderManager.EMBEDDER_DEFAULT, defaultEmbedder);
+      defaultEmbedder = null;
     }
-
-    private void stopEmbedder(MavenEmbedder embedder) {
-      if(embedder!=null) {
-        try {
-          embedder.stop();
-        } catch(MavenEmbedderException ex) {
-          String msg = "Unable to stop project embedder; " + ex.getMessage();
-          console.logError(msg);
-          Maven2Plugin.log(CLASSPATH_COMPONENT_DEPENDENCY, ex);
+    
+    public void resolve(IProject project) throws JavaModelException, CoreException {
+      Set affectedProjects = resolveProject(project);
+      for(Iterator it = affectedProjects.iterator(); it.hasNext();) {
+        IProject p = (IProject) it.next();
+        if(!resolved.containsKey(p)) {
+          resolve(p);
         }
       }
     }
-    
-    public void resolve(IProject project) throws JavaModelException, CoreException {
+
+    /**
+     * Resolves classpath container for the given project without resolving its dependent projects
+     * 
+     * @return Set of IProject which classpath can be changed by the changes in the pom of the resolved project
+     */
+    public Set resolveProject(IProject project) throws JavaModelException, CoreException {
       if(monitor.isCanceled()) {
         throw new OperationCanceledException();
       }
@@ -952,6 +1525,7 @@ public class BuildPathManager {
       Map moduleArtifacts = new LinkedHashMap();
   
       deleteMarkers(project);
+      Model oldModel = mavenModelManager.getMavenModel(pomFile);
       try {
         mavenModelManager.updateMavenModel(pomFile, resolverConfiguration.shouldIncludeModules(), monitor);
       } catch(CoreException ex) {
@@ -961,12 +1535,12 @@ public class BuildPathManager {
       MavenEmbedder embedder;
       if(resolverConfiguration.shouldResolveWorkspaceProjects()) {
         if(workspaceAwareEmbedder==null) {
-          workspaceAwareEmbedder = embedderManager.createEmbedder(EmbedderFactory.createWorkspaceCustomizer(true));
+          workspaceAwareEmbedder = embedderManager.checkoutEmbedder(MavenEmbedderManager.EMBEDDER_WORKSPACE);
         }
         embedder = workspaceAwareEmbedder;
       } else {
         if(defaultEmbedder==null) {
-          defaultEmbedder = embedderManager.createEmbedder(EmbedderFactory.createWorkspaceCustomizer(false));
+          defaultEmbedder = embedderManager.checkoutEmbedder(MavenEmbedderManager.EMBEDDER_DEFAULT);
         }
         embedder = defaultEmbedder;
       }
@@ -982,14 +1556,8 @@ public class BuildPathManager {
       } else {
         resolved.put(project, null); // TODO test me
       }
-  
-      Set dependentProjects = mavenModelManager.getDependentProjects(pomFile);
-      for(Iterator it = dependentProjects.iterator(); it.hasNext();) {
-        IProject p = (IProject) it.next();
-        if(!resolved.containsKey(p)) {
-          resolve(p);
-        }
-      }
+      
+      return mavenModelManager.getAffectedProjects(pomFile, oldModel, mavenModelManager.getMavenModel(pomFile));
     }
 
     private void resolveClasspathEntries(Set entries, Map moduleArtifacts, IFile rootPomFile, IFile pomFile,
@@ -1125,19 +1693,29 @@ public class BuildPathManager {
           if(artifactFile != null) {
             String artifactLocation = artifactFile.getAbsolutePath();
 
-            Path srcPath = materializeArtifactPath(embedder, mavenProject, a, "java-source", "sources", downloadSources,
-                monitor);
+            // attachments are downloaded in background after container is set
+            Path srcPath = materializeArtifactPath(embedder, mavenProject.getRemoteArtifactRepositories(), a,
+                "java-source", "sources", false, null, console, monitor);
 
             attributes.add(JavaCore.newClasspathAttribute(Maven2Plugin.GROUP_ID_ATTRIBUTE, a.getGroupId()));
             attributes.add(JavaCore.newClasspathAttribute(Maven2Plugin.ARTIFACT_ID_ATTRIBUTE, a.getArtifactId()));
             attributes.add(JavaCore.newClasspathAttribute(Maven2Plugin.VERSION_ATTRIBUTE, a.getVersion()));
 
             if(srcPath == null) { // no need to search for javadoc if we have source code
-              Path javadocPath = materializeArtifactPath(embedder, mavenProject, a, "javadoc", "javadoc",
-                  downloadJavadoc, monitor);
+              Path javadocPath = materializeArtifactPath(embedder, mavenProject.getRemoteArtifactRepositories(), a,
+                  "javadoc", "javadoc", false, null, console, monitor);
+              List remoteRepositories = mavenProject.getRemoteArtifactRepositories();
+              boolean requestSources = downloadSources
+                  && !missingAttachments.isMissing(a, "sources", remoteRepositories);
+              boolean requestJavadoc = downloadJavadoc && javadocPath == null
+                  && !missingAttachments.isMissing(a, "javadoc", remoteRepositories);
+              if(requestSources || requestJavadoc) {
+                attachments.add(new AttachmentDownloadJob.AttachmentRequest(currentProject, a, remoteRepositories,
+                    requestSources, requestJavadoc));
+              }
               String javaDocUrl = null;
               if(javadocPath != null) {
-                javaDocUrl = Maven2ClasspathContainer.getJavaDocUrl(javadocPath.toString());
+                javaDocUrl = Maven2ClasspathContainer.getJavaDocUrl(javadocPath.toString(), javaDocRoots);
               } else {
                 javaDocUrl = getJavaDocUrl(artifactLocation, monitor);
               }
@@ -1198,37 +1776,45 @@ public class BuildPathManager {
 
     private MavenProject getMavenProject(IFile pomFile, ResolverConfiguration resolverConfiguration,
         IProgressMonitor monitor, MavenEmbedder embedder, boolean offline, boolean debug) {
-//      MavenProject mavenProject = (MavenProject) mavenProjects.get(pomFile);
-//      if(mavenProject==null) {
-        MavenExecutionResult result = mavenModelManager.readMavenProject(pomFile.getLocation().toFile(), monitor,
-            offline, debug, resolverConfiguration, embedder);
-        MavenProject mavenProject = getMavenProject(pomFile, result);
-        // mavenProjects.put(pomFile, mavenProject);
-//      }
+      File file = pomFile.getLocation().toFile();
+      String localRepository = embedder.getLocalRepository().getBasedir();
+      MavenProject mavenProject = projectCache.get(file, resolverConfiguration, offline, localRepository);
+      if(mavenProject != null) {
+        if(debug) {
+          console.logMessage("Using cached project " + pomFile.getFullPath());
+        }
+        return mavenProject;
+      }
+
+      MavenExecutionResult result = mavenModelManager.readMavenProject(file, monitor, offline, debug,
+          resolverConfiguration, embedder);
+      mavenProject = getMavenProject(pomFile, result);
+      if(mavenProject != null && !result.hasExceptions()) {
+        projectCache.put(file, resolverConfiguration, offline, localRepository, mavenProject);
+      }
       return mavenProject;
     }
     
     private String getJavaDocUrl(String artifactLocation, IProgressMonitor monitor) throws CoreException {
       // guess the javadoc url from the project url in the artifact's pom.xml
       File file = new File(artifactLocation.substring(0, artifactLocation.length() - 4) + ".pom");
-      if(file.exists()) {
-        Model model = mavenModelManager.readMavenModel(file);
-        String url = model.getUrl();
+      ArtifactPomCache.PomSummary summary = artifactPomCache.get(file);
+      if(summary != null) {
+        String url = summary.getUrl();
         if(url != null) {
-          url = url.trim();
-          if(url.length() > 0) {
-            if(!url.endsWith("/"))
-              url += "/";
-            return url + "apidocs/"; // assuming project is using maven-generated site
-          }
+          if(!url.endsWith("/"))
+            url += "/";
+          return url + "apidocs/"; // assuming project is using maven-generated site
         }
       }
       return null;
     }
 
     // type = "java-source"
-    private Path materializeArtifactPath(MavenEmbedder embedder, MavenProject mavenProject, Artifact a, String type,
-        String suffix, boolean download, IProgressMonitor monitor) throws Exception {
+    static Path materializeArtifactPath(MavenEmbedder embedder, List remoteRepositories, Artifact a, String type,
+        String suffix, boolean download, MissingAttachmentCache missingAttachments, Maven2Console console,
+        IProgressMonitor monitor) throws Exception {
+      String classifier = suffix;
       File artifactFile = a.getFile();
       if(artifactFile == null) {
         console.logError("Missing artifact file for " + a.getId());
@@ -1261,7 +1847,7 @@ public class BuildPathManager {
           Artifact f = embedder.createArtifactWithClassifier(a.getGroupId(), a.getArtifactId(), a.getVersion(), type,
               suffix);
           if(f != null) {
-            embedder.resolve(f, mavenProject.getRemoteArtifactRepositories(), embedder.getLocalRepository());
+            embedder.resolve(f, remoteRepositories, embedder.getLocalRepository());
             return new Path(f.getFile().getAbsolutePath());
           }
         } catch(AbstractArtifactResolutionException ex) {
@@ -1270,6 +1856,9 @@ public class BuildPathManager {
           if(!"java-source".equals(type) && !"javadoc".equals(type)) {
             console.logError("Error: " + ex.getOriginalMessage());
           }
+          if(ex instanceof ArtifactNotFoundException && missingAttachments != null) {
+            missingAttachments.setMissing(a, classifier, remoteRepositories);
+          }
         } finally {
           monitor.done();
         }
@@ -20,6 +20,8 @@
 package org.maven.ide.eclipse.embedder;
 
 import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.maven.artifact.resolver.ArtifactResolver;
 import org.apache.maven.embedder.Configuration;
@@ -38,6 +40,9 @@ import org.codehaus.plexus.component.repository.ComponentDescriptor;
 
 public class EmbedderFactory {
 
+  /** settings file path -> SettingsValidation */
+  private static final Map settingsCache = new HashMap();
+
   public static MavenEmbedder createMavenEmbedder(ContainerCustomizer customizer, MavenEmbedderLogger logger, String globalSettings) throws MavenEmbedderException {
     ClassLoader loader = Thread.currentThread().getContextClassLoader();
     return createMavenEmbedder(customizer, logger, globalSettings, loader);
@@ -51,7 +56,7 @@ public class EmbedderFactory {
     configuration.setConfigurationCustomizer(customizer);
     
     File userSettingsFile = MavenEmbedder.DEFAULT_USER_SETTINGS_FILE;
-    ConfigurationValidationResult userResult = validateConfiguration(userSettingsFile, logger);
+    ConfigurationValidationResult userResult = getValidationResult(userSettingsFile, logger);
     if(userResult.isValid()) {
       configuration.setUserSettingsFile(userSettingsFile);
     } else {
@@ -63,7 +68,7 @@ public class EmbedderFactory {
     
     if(globalSettings!=null && globalSettings.length()>0) {
       File globalSettingsFile = new File(globalSettings);
-      ConfigurationValidationResult globalResult = validateConfiguration(globalSettingsFile, logger);
+      ConfigurationValidationResult globalResult = getValidationResult(globalSettingsFile, logger);
       if(globalResult.isValid()) {
         configuration.setGlobalSettingsFile(globalSettingsFile);
       } else {
@@ -84,6 +89,34 @@ public class EmbedderFactory {
     return MavenEmbedder.validateConfiguration(configuration);
   }
 
+  /**
+   * Returns validation result for the given settings file. Results are cached until file size or modification
+   * time is changed or {@link #flushSettingsCache()} is called.
+   */
+  public static ConfigurationValidationResult getValidationResult(File file, MavenEmbedderLogger logger) {
+    String key = file.getAbsolutePath();
+    long size = file.length();
+    long lastModified = file.lastModified();
+    synchronized(settingsCache) {
+      SettingsValidation validation = (SettingsValidation) settingsCache.get(key);
+      if(validation != null && validation.size == size && validation.lastModified == lastModified) {
+        return validation.result;
+      }
+    }
+
+    ConfigurationValidationResult result = validateConfiguration(file, logger);
+    synchronized(settingsCache) {
+      settingsCache.put(key, new SettingsValidation(size, lastModified, result));
+    }
+    return result;
+  }
+
+  public static void flushSettingsCache() {
+    synchronized(settingsCache) {
+      settingsCache.clear();
+    }
+  }
+
   public static ContainerCustomizer createWorkspaceCustomizer(final boolean resolveWorkspaceProjects) {
     return new ContainerCustomizer() {
         public void customize(PlexusContainer container) {
@@ -170,6 +203,19 @@ public class EmbedderFactory {
     
     return request;
   }
+
+
+  private static final class SettingsValidation {
+    final long size;
+    final long lastModified;
+    final ConfigurationValidationResult result;
+
+    SettingsValidation(long size, long lastModified, ConfigurationValidationResult result) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.result = result;
+    }
+  }
   
 }
 
@@ -20,7 +20,13 @@
 package org.maven.ide.eclipse.embedder;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
+import org.apache.maven.context.DefaultBuildContextManager;
 import org.apache.maven.embedder.ContainerCustomizer;
 import org.apache.maven.embedder.MavenEmbedder;
 import org.apache.maven.embedder.MavenEmbedderException;
@@ -42,11 +48,30 @@ import org.maven.ide.eclipse.preferences.Maven2PreferenceConstants;
  * @author Eugene Kuleshov
  */
 public class MavenEmbedderManager {
+  /** embedder resolving dependencies from the workspace projects */
+  public static final int EMBEDDER_WORKSPACE = 0;
+  /** embedder resolving dependencies from the repositories only */
+  public static final int EMBEDDER_DEFAULT = 1;
+  /** embedder used to execute builds */
+  public static final int EMBEDDER_EXECUTION = 2;
+  
+  /** min number of idle embedders kept for each embedder type */
+  private static final int MIN_POOLED = 2;
+  
   private final Maven2Console console;
   private final IPreferenceStore preferenceStore;
 
   private MavenEmbedder workspaceEmbedder;
 
+  /** idle embedders for each embedder type */
+  private final List[] pool = new List[] {new ArrayList(), new ArrayList(), new ArrayList()};
+
+  /** checked out embedder -> settings generation it was created for */
+  private final Map checkedOut = new IdentityHashMap();
+
+  /** incremented when Maven settings are changed */
+  private int generation = 0;
+
   
   public MavenEmbedderManager(Maven2Console console, IPreferenceStore preferenceStore) {
     this.console = console;
@@ -70,7 +95,99 @@ public class MavenEmbedderManager {
     return null;
   }
   
-  public MavenEmbedder getWorkspaceEmbedder() {
+  /**
+   * Returns idle embedder of the given type from the pool or creates a new one. Embedder must be returned using
+   * {@link #releaseEmbedder(int, MavenEmbedder)} and should not be stopped by the caller.
+   * 
+   * @param type one of EMBEDDER_WORKSPACE, EMBEDDER_DEFAULT or EMBEDDER_EXECUTION
+   * @return embedder or null if embedder can't be created
+   */
+  public MavenEmbedder checkoutEmbedder(int type) {
+    MavenEmbedder embedder = null;
+    int embedderGeneration;
+    synchronized(pool) {
+      List idle = pool[type];
+      if(!idle.isEmpty()) {
+        embedder = (MavenEmbedder) idle.remove(idle.size() - 1);
+      }
+      embedderGeneration = generation;
+    }
+
+    if(embedder == null) {
+      embedder = createEmbedder(createCustomizer(type));
+      if(embedder == null) {
+        return null;
+      }
+    }
+
+    synchronized(pool) {
+      checkedOut.put(embedder, new Integer(embedderGeneration));
+    }
+    return embedder;
+  }
+
+  /**
+   * Returns embedder checked out using {@link #checkoutEmbedder(int)} back to the pool. Embedder is stopped if
+   * pool is full or Maven settings has been changed since embedder was checked out.
+   */
+  public void releaseEmbedder(int type, MavenEmbedder embedder) {
+    if(embedder == null) {
+      return;
+    }
+    synchronized(pool) {
+      Integer embedderGeneration = (Integer) checkedOut.remove(embedder);
+      List idle = pool[type];
+      if(embedderGeneration != null && embedderGeneration.intValue() == generation && idle.size() < getPoolSize()) {
+        idle.add(embedder);
+        return;
+      }
+    }
+    stopEmbedder(embedder);
+  }
+
+  /**
+   * Returns max number of idle embedders kept for each embedder type. Pool is large enough to give each resolver
+   * thread its own embedder, so parallel resolution does not create and stop embedders on every project.
+   */
+  public int getPoolSize() {
+    return Math.max(MIN_POOLED, preferenceStore.getInt(Maven2PreferenceConstants.P_RESOLVER_THREADS));
+  }
+
+  /**
+   * Detaches the calling thread from the build context inherited from the thread that has started it. Embedder keeps
+   * build context, including cached projects, in an unsynchronized map held by an inheritable thread local, so worker
+   * threads have to call this before using their embedders.
+   */
+  public static void clearBuildContext() {
+    new DefaultBuildContextManager().clearBuildContext();
+  }
+
+  public static int getEmbedderType(boolean resolveWorkspaceProjects) {
+    return resolveWorkspaceProjects ? EMBEDDER_WORKSPACE : EMBEDDER_DEFAULT;
+  }
+
+  private static ContainerCustomizer createCustomizer(int type) {
+    switch(type) {
+      case EMBEDDER_WORKSPACE:
+        return EmbedderFactory.createWorkspaceCustomizer(true);
+      case EMBEDDER_DEFAULT:
+        return EmbedderFactory.createWorkspaceCustomizer(false);
+      case EMBEDDER_EXECUTION:
+        return EmbedderFactory.createExecutionCustomizer();
+      default:
+        throw new IllegalArgumentException("Unknown embedder type " + type);
+    }
+  }
+
+  private void stopEmbedder(MavenEmbedder embedder) {
+    try {
+      embedder.stop();
+    } catch(MavenEmbedderException ex) {
+      console.logError("Error on stopping project embedder " + ex.getMessage());
+    }
+  }
+  
+  public synchronized MavenEmbedder getWorkspaceEmbedder() {
     if(this.workspaceEmbedder==null) {
       this.workspaceEmbedder = createEmbedder(EmbedderFactory.createExecutionCustomizer()); 
     }
@@ -78,6 +195,7 @@ public class MavenEmbedderManager {
   }
 
   public void invalidateMavenSettings() {
+    EmbedderFactory.flushSettingsCache();
     shutdown();
   }
 
@@ -108,13 +226,22 @@ public class MavenEmbedderManager {
   public void shutdown() {
     // XXX need to wait when embedder jobs will be completed 
     if(workspaceEmbedder!=null) {
-      try {
-        workspaceEmbedder.stop();
-      } catch(MavenEmbedderException ex) {
-        console.logError("Error on stopping project embedder "+ex.getMessage());
-      }
+      stopEmbedder(workspaceEmbedder);
       workspaceEmbedder = null;
     }
+    
+    // checked out embedders are stopped when released
+    List idle = new ArrayList();
+    synchronized(pool) {
+      generation++;
+      for(int i = 0; i < pool.length; i++ ) {
+        idle.addAll(pool[i]);
+        pool[i].clear();
+      }
+    }
+    for(Iterator it = idle.iterator(); it.hasNext();) {
+      stopEmbedder((MavenEmbedder) it.next());
+    }
   }
   
 
@@ -0,0 +1,379 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.maven.ide.eclipse.embedder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.model.Model;
+
+import org.eclipse.core.resources.IFile;
+
+
+/**
+ * Thread safe store of the workspace models and dependencies between workspace projects and artifacts. Entries are
+ * partitioned into stripes by key and each stripe is guarded by its own lock, so resolvers updating different
+ * projects don't block each other. Single key lookups, including dependents and children of an artifact, are
+ * answered from the stripe of the key. Readers that need a consistent view of several maps use an immutable
+ * {@link Snapshot}, which is shared by all readers until the graph is modified again.
+ */
+public class MavenModelGraph {
+  private static final int STRIPES = 16;
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  /** last built snapshot or null if graph has been modified since */
+  private volatile Snapshot snapshot;
+
+  public MavenModelGraph() {
+    for(int i = 0; i < stripes.length; i++ ) {
+      stripes[i] = new Stripe(i);
+    }
+  }
+
+  public Model getModel(Object pomKey) {
+    Stripe stripe = getStripe(pomKey);
+    synchronized(stripe) {
+      return (Model) stripe.models.get(pomKey);
+    }
+  }
+
+  public void putModel(Object pomKey, Model model) {
+    updateModel(pomKey, model, model.getParent() == null ? null : ArtifactKey.get(model.getParent()).intern());
+  }
+
+  public Model removeModel(Object pomKey) {
+    return updateModel(pomKey, null, null);
+  }
+
+  /**
+   * Replaces model of the given pom and moves the pom between children of the old and the new parent
+   * 
+   * @param model new model or null to remove the model
+   * @return previous model or null
+   */
+  private Model updateModel(Object pomKey, Model model, Object parentKey) {
+    Stripe stripe = getStripe(pomKey);
+    while(true) {
+      Object oldParentKey;
+      synchronized(stripe) {
+        oldParentKey = stripe.parents.get(pomKey);
+      }
+
+      // pom and both parents are updated atomically, locks are always taken in stripe order
+      Stripe[] locks = getStripes(pomKey, oldParentKey, parentKey);
+      synchronized(locks[0]) {
+        synchronized(locks[1]) {
+          synchronized(locks[2]) {
+            if(stripe.parents.get(pomKey) != oldParentKey) {
+              // parent has been changed by another thread while locks were released
+              continue;
+            }
+
+            if(oldParentKey != null) {
+              removeFromSet(getStripe(oldParentKey).children, oldParentKey, pomKey);
+              stripe.parents.remove(pomKey);
+            }
+            if(parentKey != null) {
+              getSet(getStripe(parentKey).children, parentKey).add(pomKey);
+              stripe.parents.put(pomKey, parentKey);
+            }
+
+            snapshot = null;
+            return (Model) (model == null ? stripe.models.remove(pomKey) : stripe.models.put(pomKey, model));
+          }
+        }
+      }
+    }
+  }
+
+  public IFile getArtifactFile(Object artifactKey) {
+    Stripe stripe = getStripe(artifactKey);
+    synchronized(stripe) {
+      return (IFile) stripe.artifacts.get(artifactKey);
+    }
+  }
+
+  public void putArtifactFile(Object artifactKey, IFile pomFile) {
+    Stripe stripe = getStripe(artifactKey);
+    synchronized(stripe) {
+      stripe.artifacts.put(artifactKey, pomFile);
+      snapshot = null;
+    }
+  }
+
+  public void removeArtifactFile(Object artifactKey) {
+    Stripe stripe = getStripe(artifactKey);
+    synchronized(stripe) {
+      stripe.artifacts.remove(artifactKey);
+      snapshot = null;
+    }
+  }
+
+  /**
+   * @return number of stored models
+   */
+  public int getModelCount() {
+    int count = 0;
+    for(int i = 0; i < stripes.length; i++ ) {
+      synchronized(stripes[i]) {
+        count += stripes[i].models.size();
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return copy of the set of pom keys of the projects that depend on the given artifact
+   */
+  public Set getDependentProjects(Object artifactKey) {
+    Stripe stripe = getStripe(artifactKey);
+    synchronized(stripe) {
+      Set projects = (Set) stripe.artifactsToProjects.get(artifactKey);
+      return projects == null ? new HashSet() : new HashSet(projects);
+    }
+  }
+
+  /**
+   * @return copy of the set of pom keys of the workspace models that have given artifact as a parent
+   */
+  public Set getChildren(Object parentKey) {
+    Stripe stripe = getStripe(parentKey);
+    synchronized(stripe) {
+      Set poms = (Set) stripe.children.get(parentKey);
+      return poms == null ? new HashSet() : new HashSet(poms);
+    }
+  }
+
+  /**
+   * Records that project with the given pom depends on the given artifact
+   */
+  public void addDependency(Object pomKey, Object artifactKey) {
+    Stripe s1 = getStripe(pomKey);
+    Stripe s2 = getStripe(artifactKey);
+    // both directions are updated atomically, locks are always taken in stripe order
+    Stripe first = s1.index <= s2.index ? s1 : s2;
+    Stripe second = s1.index <= s2.index ? s2 : s1;
+    synchronized(first) {
+      synchronized(second) {
+        getSet(s1.projectsToArtifacts, pomKey).add(artifactKey);
+        getSet(s2.artifactsToProjects, artifactKey).add(pomKey);
+        snapshot = null;
+      }
+    }
+  }
+
+  /**
+   * Removes dependencies of the project with the given pom from both directions of the graph
+   */
+  public void removeDependencies(Object pomKey) {
+    Stripe stripe = getStripe(pomKey);
+    Set artifactKeys;
+    synchronized(stripe) {
+      Set s = (Set) stripe.projectsToArtifacts.get(pomKey);
+      if(s == null) {
+        return;
+      }
+      artifactKeys = new HashSet(s);
+    }
+
+    for(Iterator it = artifactKeys.iterator(); it.hasNext();) {
+      removeDependency(pomKey, it.next());
+    }
+  }
+
+  private void removeDependency(Object pomKey, Object artifactKey) {
+    Stripe s1 = getStripe(pomKey);
+    Stripe s2 = getStripe(artifactKey);
+    Stripe first = s1.index <= s2.index ? s1 : s2;
+    Stripe second = s1.index <= s2.index ? s2 : s1;
+    synchronized(first) {
+      synchronized(second) {
+        removeFromSet(s1.projectsToArtifacts, pomKey, artifactKey);
+        removeFromSet(s2.artifactsToProjects, artifactKey, pomKey);
+        snapshot = null;
+      }
+    }
+  }
+
+  /**
+   * @return consistent immutable view of the graph
+   */
+  public Snapshot getSnapshot() {
+    Snapshot s = snapshot;
+    return s != null ? s : buildSnapshot(0);
+  }
+
+  private Snapshot buildSnapshot(int n) {
+    if(n < stripes.length) {
+      synchronized(stripes[n]) {
+        return buildSnapshot(n + 1);
+      }
+    }
+
+    // all stripes are locked at this point
+    Snapshot s = snapshot;
+    if(s == null) {
+      s = new Snapshot(stripes);
+      snapshot = s;
+    }
+    return s;
+  }
+
+  private Stripe getStripe(Object key) {
+    return stripes[(key.hashCode() & 0x7fffffff) % stripes.length];
+  }
+
+  /**
+   * @return stripes of the given keys sorted by index, stripe of the first key is used for null keys
+   */
+  private Stripe[] getStripes(Object key1, Object key2, Object key3) {
+    Stripe s1 = getStripe(key1);
+    Stripe[] s = new Stripe[] {s1, key2 == null ? s1 : getStripe(key2), key3 == null ? s1 : getStripe(key3)};
+    Arrays.sort(s, new Comparator() {
+      public int compare(Object o1, Object o2) {
+        return ((Stripe) o1).index - ((Stripe) o2).index;
+      }
+    });
+    return s;
+  }
+
+  private static Set getSet(Map map, Object key) {
+    Set s = (Set) map.get(key);
+    if(s == null) {
+      s = new HashSet();
+      map.put(key, s);
+    }
+    return s;
+  }
+
+  private static void removeFromSet(Map map, Object key, Object value) {
+    Set s = (Set) map.get(key);
+    if(s != null) {
+      s.remove(value);
+      if(s.isEmpty()) {
+        map.remove(key);
+      }
+    }
+  }
+
+
+  private static final class Stripe {
+    final int index;
+
+    /** pom key -> Model */
+    final Map models = new HashMap();
+
+    /** artifact key -> pom IFile */
+    final Map artifacts = new HashMap();
+
+    /** pom key -> Set of artifact keys */
+    final Map projectsToArtifacts = new HashMap();
+
+    /** artifact key -> Set of pom keys */
+    final Map artifactsToProjects = new HashMap();
+
+    /** pom key -> parent artifact key */
+    final Map parents = new HashMap();
+
+    /** parent artifact key -> Set of pom keys of the workspace models inheriting from it */
+    final Map children = new HashMap();
+
+    Stripe(int index) {
+      this.index = index;
+    }
+  }
+
+
+  /**
+   * Immutable view of the graph
+   */
+  public static final class Snapshot {
+    private final Map models = new HashMap();
+    private final Map artifacts = new HashMap();
+    private final Map projectsToArtifacts = new HashMap();
+    private final Map artifactsToProjects = new HashMap();
+    /** parent artifact key -> Set of pom keys of the workspace models inheriting from it */
+    private final Map children = new HashMap();
+
+    Snapshot(Stripe[] stripes) {
+      for(int i = 0; i < stripes.length; i++ ) {
+        Stripe stripe = stripes[i];
+        models.putAll(stripe.models);
+        artifacts.putAll(stripe.artifacts);
+        copy(stripe.projectsToArtifacts, projectsToArtifacts);
+        copy(stripe.artifactsToProjects, artifactsToProjects);
+        copy(stripe.children, children);
+      }
+    }
+
+    private static void copy(Map source, Map target) {
+      for(Iterator it = source.entrySet().iterator(); it.hasNext();) {
+        Map.Entry e = (Map.Entry) it.next();
+        target.put(e.getKey(), Collections.unmodifiableSet(new HashSet((Set) e.getValue())));
+      }
+    }
+
+    public Model getModel(Object pomKey) {
+      return (Model) models.get(pomKey);
+    }
+
+    public IFile getArtifactFile(Object artifactKey) {
+      return (IFile) artifacts.get(artifactKey);
+    }
+
+    /**
+     * @return pom key -> Model
+     */
+    public Map getModels() {
+      return Collections.unmodifiableMap(models);
+    }
+
+    /**
+     * @return pom key -> Set of artifact keys
+     */
+    public Map getProjectsToArtifacts() {
+      return Collections.unmodifiableMap(projectsToArtifacts);
+    }
+
+    /**
+     * @return Set of pom keys of the projects that depend on the given artifact
+     */
+    public Set getDependentProjects(Object artifactKey) {
+      Set projects = (Set) artifactsToProjects.get(artifactKey);
+      return projects == null ? Collections.EMPTY_SET : projects;
+    }
+
+    /**
+     * @return Set of pom keys of the workspace models that have given artifact as a parent
+     */
+    public Set getChildren(Object parentKey) {
+      Set poms = (Set) children.get(parentKey);
+      return poms == null ? Collections.EMPTY_SET : poms;
+    }
+  }
+
+}
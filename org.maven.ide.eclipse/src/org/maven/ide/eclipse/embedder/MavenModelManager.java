@@ -19,18 +19,30 @@
 
 package org.maven.ide.eclipse.embedder;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.StringTokenizer;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.embedder.MavenEmbedder;
@@ -38,6 +50,7 @@ import org.apache.maven.execution.MavenExecutionRequest;
 import org.apache.maven.execution.MavenExecutionResult;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
 import org.apache.maven.project.MavenProject;
 
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
@@ -47,10 +60,13 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jface.preference.IPreferenceStore;
@@ -69,6 +85,19 @@ import org.maven.ide.eclipse.preferences.Maven2PreferenceConstants;
  * @author Eugene Kuleshov
  */
 public class MavenModelManager {
+  private static final String SNAPSHOT_VERSION = "1";
+
+  private static final String KEY_VERSION = "version";
+
+  /** prefix for the resolver configuration of the workspace project */
+  private static final String KEY_CONFIGURATION = "configuration.";
+
+  /** prefix for the size, modification time and hash of the pom file */
+  private static final String KEY_POM = "pom.";
+
+  /** prefix for the artifact keys of the project dependencies */
+  private static final String KEY_DEPENDENCIES = "dependencies.";
+
   private final MavenEmbedderManager embedderManager;
 
   private final MavenRepositoryIndexManager indexManager;
@@ -78,55 +107,96 @@ public class MavenModelManager {
   private final IPreferenceStore preferenceStore;
   
   /**
-   * Map of the project pomFile location to the Model
+   * Models of the workspace poms, pomFiles of the workspace artifacts and dependencies between them.
+   * 
+   * @see #getPomFileKey(IFile)
+   * @see #getArtifactKey(Artifact)
    */
-  private final Map models = new HashMap();
+  private final MavenModelGraph graph = new MavenModelGraph();
+
+  private boolean isInitialized = false;
+
+  /** thread reading workspace models in {@link #initModels(IProgressMonitor)}, guarded by this */
+  private Thread initThread;
 
   /**
-   * Map of the artifact keys to the pomFile in the Worspace for those artifacts.
-   * 
-   * @see #getArtifactKey(Artifact)
+   * Snapshot of the project dependencies saved at shutdown, so they don't have to be resolved again on startup
    */
-  private final Map artifacts = new HashMap();
+  private final File snapshotFile;
 
-  private final Map projectsToArtifacts = new HashMap();
+  /**
+   * Pom keys of the projects which dependencies are being resolved in background
+   */
+  private final Set pendingProjects = new HashSet();
 
-  private final Map artifactsToProjects = new HashMap();
+  /**
+   * Pom keys of the projects queued for the classpath refresh, guarded by pendingProjects
+   */
+  private final Set queuedProjects = new HashSet();
 
-  private boolean isInitialized = false;
+  /**
+   * Pom key -> stamp of the pom content stored model has been read from
+   */
+  private final Map pomStamps = new HashMap();
 
   public MavenModelManager(MavenEmbedderManager embedderManager, MavenRepositoryIndexManager indexManager,
-      Maven2Console console, IPreferenceStore preferenceStore) {
+      Maven2Console console, IPreferenceStore preferenceStore, IPath stateLocation) {
     this.embedderManager = embedderManager;
     this.indexManager = indexManager;
     this.console = console;
     this.preferenceStore = preferenceStore;
+    this.snapshotFile = new File(stateLocation.toFile(), "workspaceModels.properties");
   }
 
   public IFile getArtifactFile(Artifact a) {
-    IFile file = (IFile) artifacts.get(getArtifactKey(a));
+    IFile file = graph.getArtifactFile(getArtifactKey(a));
     return file != null && file.isAccessible() ? file : null;
   }
 
   public Model getMavenModel(IFile pomFile) {
-    return (Model) models.get(getPomFileKey(pomFile));
+    return graph.getModel(getPomFileKey(pomFile));
   }
 
-  public synchronized void initModels(IProgressMonitor monitor) {
-    if(isInitialized) {
-      return;
+  /**
+   * Reads models and dependencies of the workspace projects. Callers wait until models are initialized by the first
+   * caller, but manager lock is not held while models are read, because worker threads resolving projects access the
+   * manager through the workspace artifact resolver.
+   */
+  public void initModels(IProgressMonitor monitor) {
+    synchronized(this) {
+      if(initThread == Thread.currentThread()) {
+        // called again while projects are read
+        return;
+      }
+      while(initThread != null) {
+        try {
+          wait();
+        } catch(InterruptedException ex) {
+          return;
+        }
+      }
+      if(isInitialized) {
+        return;
+      }
+      initThread = Thread.currentThread();
     }
 
-    isInitialized = true;
+    try {
+      readWorkspaceModels(monitor);
+    } finally {
+      synchronized(this) {
+        isInitialized = true;
+        initThread = null;
+        notifyAll();
+      }
+    }
+  }
 
+  private void readWorkspaceModels(IProgressMonitor monitor) {
+    // IFile -> ResolverConfiguration
+    Map configurations = new LinkedHashMap();
     IProject[] projects = ResourcesPlugin.getWorkspace().getRoot().getProjects();
-
-    Map mavenModels = new HashMap();
     for(int i = 0; i < projects.length; i++ ) {
-      if(monitor.isCanceled()) {
-        throw new OperationCanceledException();
-      }
-
       IProject project = projects[i];
       try {
         if(project.isOpen() && project.hasNature(Maven2Plugin.NATURE_ID)) {
@@ -134,10 +204,8 @@ public class MavenModelManager {
           if(pomFile == null) {
             console.logError("Project " + project.getName() + " is missing pom.xml");
           } else {
-
             IJavaProject javaProject = JavaCore.create(project);
-            ResolverConfiguration resolverConfiguration = BuildPathManager.getResolverConfiguration(javaProject);
-            initMavenModel(pomFile, pomFile, mavenModels, monitor, resolverConfiguration);
+            configurations.put(pomFile, BuildPathManager.getResolverConfiguration(javaProject));
           }
         }
       } catch(CoreException ex) {
@@ -145,33 +213,348 @@ public class MavenModelManager {
       }
     }
 
+    int threads = preferenceStore.getInt(Maven2PreferenceConstants.P_RESOLVER_THREADS);
+
+    long l1 = System.currentTimeMillis();
+    initMavenModels(configurations, threads, monitor);
+    long l2 = System.currentTimeMillis();
+    console.logMessage("Read " + graph.getModelCount() + " Maven models in " + (l2 - l1) + " ms");
+
+    Properties snapshot = loadSnapshot();
+    if(snapshot == null) {
+      initMavenProjects(configurations, threads, monitor);
+      long l3 = System.currentTimeMillis();
+      console.logMessage("Resolved " + configurations.size() + " Maven projects in " + (l3 - l2) + " ms");
+      return;
+    }
+
+    Map freshPoms = new HashMap();
+    Map staleProjects = new LinkedHashMap();
+    for(Iterator it = configurations.entrySet().iterator(); it.hasNext();) {
+      if(monitor.isCanceled()) {
+        throw new OperationCanceledException();
+      }
+      Map.Entry e = (Map.Entry) it.next();
+      IFile pomFile = (IFile) e.getKey();
+      ResolverConfiguration resolverConfiguration = (ResolverConfiguration) e.getValue();
+      if(!restoreMavenProject(pomFile, resolverConfiguration, snapshot, freshPoms)) {
+        staleProjects.put(pomFile, resolverConfiguration);
+        synchronized(pendingProjects) {
+          pendingProjects.add(getPomFileKey(pomFile));
+        }
+      }
+    }
+    long l3 = System.currentTimeMillis();
+    console.logMessage("Restored " + (configurations.size() - staleProjects.size()) + " Maven projects in "
+        + (l3 - l2) + " ms");
+
+    if(!staleProjects.isEmpty()) {
+      console.logMessage("Resolving " + staleProjects.size() + " changed projects in background");
+      new ModelUpdateJob(staleProjects, threads).schedule();
+    }
+  }
+
+  /**
+   * Reads models of the given poms and their modules
+   * 
+   * @param configurations Map of IFile to ResolverConfiguration
+   */
+  private void initMavenModels(Map configurations, int threads, IProgressMonitor monitor) {
+    if(threads > 1) {
+      List tasks = new ParallelInitializer(false).run(configurations, threads, monitor);
+      for(Iterator it = tasks.iterator(); it.hasNext();) {
+        InitTask task = (InitTask) it.next();
+        if(task.model != null) {
+          removeMavenModel(task.pomFile, false, monitor);
+          addMavenModel(task.pomFile, task.model, task.stamp);
+        }
+      }
+      return;
+    }
+
+    Map mavenModels = new HashMap();
+    for(Iterator it = configurations.entrySet().iterator(); it.hasNext();) {
+      if(monitor.isCanceled()) {
+        throw new OperationCanceledException();
+      }
+      Map.Entry e = (Map.Entry) it.next();
+      IFile pomFile = (IFile) e.getKey();
+      try {
+        initMavenModel(pomFile, pomFile, mavenModels, monitor, (ResolverConfiguration) e.getValue());
+      } catch(CoreException ex) {
+        console.logError("Unable to read project " + pomFile.getProject().getName() + "; " + ex.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Resolves dependencies of the given poms and their modules
+   * 
+   * @param configurations Map of IFile to ResolverConfiguration
+   */
+  private void initMavenProjects(Map configurations, int threads, IProgressMonitor monitor) {
+    if(threads > 1) {
+      List tasks = new ParallelInitializer(true).run(configurations, threads, monitor);
+      for(Iterator it = tasks.iterator(); it.hasNext();) {
+        InitTask task = (InitTask) it.next();
+        if(task.artifacts != null) {
+          for(Iterator ait = task.artifacts.iterator(); ait.hasNext();) {
+            Artifact artifact = (Artifact) ait.next();
+            addProjectArtifact(task.pomFile, artifact);
+            addProjectArtifact(task.rootPomFile, artifact);
+          }
+        }
+      }
+      return;
+    }
+
     Map mavenProjects = new HashMap();
-    for(int i = 0; i < projects.length; i++ ) {
+    for(Iterator it = configurations.entrySet().iterator(); it.hasNext();) {
       if(monitor.isCanceled()) {
         throw new OperationCanceledException();
       }
+      Map.Entry e = (Map.Entry) it.next();
+      IFile pomFile = (IFile) e.getKey();
+      try {
+        initMavenProject(pomFile, pomFile, mavenProjects, monitor, (ResolverConfiguration) e.getValue());
+      } catch(CoreException ex) {
+        console.logError("Unable to read project " + pomFile.getProject().getName() + "; " + ex.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Restores dependencies of the project and its modules from the snapshot saved in the previous session.
+   * 
+   * @return false if project, any of its modules or their parents have been changed since snapshot was saved
+   */
+  private boolean restoreMavenProject(IFile pomFile, ResolverConfiguration resolverConfiguration,
+      Properties snapshot, Map freshPoms) {
+    String configuration = snapshot.getProperty(KEY_CONFIGURATION + getPomFileKey(pomFile).toPortableString());
+    if(!getConfigurationKey(resolverConfiguration).equals(configuration)) {
+      return false;
+    }
 
+    List pomFiles = new ArrayList();
+    collectPomFiles(pomFile, resolverConfiguration.shouldIncludeModules(), pomFiles);
+    for(Iterator it = pomFiles.iterator(); it.hasNext();) {
+      if(!isFresh((IFile) it.next(), snapshot, freshPoms)) {
+        return false;
+      }
+    }
+
+    for(Iterator it = pomFiles.iterator(); it.hasNext();) {
+      IPath pomKey = getPomFileKey((IFile) it.next());
+      String dependencies = snapshot.getProperty(KEY_DEPENDENCIES + pomKey.toPortableString());
+      if(dependencies != null) {
+        for(StringTokenizer st = new StringTokenizer(dependencies, ","); st.hasMoreTokens();) {
+          ArtifactKey artifactKey = ArtifactKey.parse(st.nextToken());
+          if(artifactKey != null) {
+            graph.addDependency(pomKey, artifactKey.intern());
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  private void collectPomFiles(IFile pomFile, boolean includeModules, List pomFiles) {
+    if(pomFiles.contains(pomFile)) {
+      return;
+    }
+    pomFiles.add(pomFile);
+
+    Model mavenModel = graph.getModel(getPomFileKey(pomFile));
+    if(includeModules && mavenModel != null) {
+      IContainer parent = pomFile.getParent();
+      for(Iterator it = mavenModel.getModules().iterator(); it.hasNext();) {
+        String module = (String) it.next();
+        IResource memberPom = parent.findMember(module + "/" + Maven2Plugin.POM_FILE_NAME); //$NON-NLS-1$
+        if(memberPom != null && memberPom.getType() == IResource.FILE && memberPom.isAccessible()) {
+          collectPomFiles((IFile) memberPom, includeModules, pomFiles);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return true if pom and its parent poms from the workspace are not changed since snapshot was saved
+   */
+  private boolean isFresh(IFile pomFile, Properties snapshot, Map freshPoms) {
+    IPath pomKey = getPomFileKey(pomFile);
+    Boolean fresh = (Boolean) freshPoms.get(pomKey);
+    if(fresh == null) {
+      // considered stale while parents are checked to break cycles
+      freshPoms.put(pomKey, Boolean.FALSE);
+
+      boolean isFresh = isStampValid(pomFile, snapshot.getProperty(KEY_POM + pomKey.toPortableString()));
+      Model mavenModel = graph.getModel(pomKey);
+      if(isFresh && mavenModel != null && mavenModel.getParent() != null) {
+        IFile parentPom = graph.getArtifactFile(ArtifactKey.get(mavenModel.getParent()));
+        isFresh = parentPom == null || isFresh(parentPom, snapshot, freshPoms);
+      }
+
+      fresh = Boolean.valueOf(isFresh);
+      freshPoms.put(pomKey, fresh);
+    }
+    return fresh.booleanValue();
+  }
+
+  /**
+   * Saves dependencies of the workspace projects, so they can be restored on the next startup
+   */
+  public synchronized void saveModels() {
+    if(!isInitialized) {
+      // previous snapshot is still valid
+      return;
+    }
+
+    Properties snapshot = new Properties();
+    snapshot.setProperty(KEY_VERSION, SNAPSHOT_VERSION);
+
+    // dependencies of these projects may not match the current poms
+    Set stalePoms = new HashSet();
+    synchronized(pendingProjects) {
+      stalePoms.addAll(pendingProjects);
+      stalePoms.addAll(queuedProjects);
+    }
+
+    IProject[] projects = ResourcesPlugin.getWorkspace().getRoot().getProjects();
+    for(int i = 0; i < projects.length; i++ ) {
       IProject project = projects[i];
       try {
         if(project.isOpen() && project.hasNature(Maven2Plugin.NATURE_ID)) {
-          IFile pomFile = project.getFile(Maven2Plugin.POM_FILE_NAME);
-          if(pomFile == null) {
-            console.logError("Project " + project.getName() + " is missing pom.xml");
-          } else {
-            IJavaProject javaProject = JavaCore.create(project);
-            ResolverConfiguration resolverConfiguration = BuildPathManager.getResolverConfiguration(javaProject);
-            initMavenProject(pomFile, pomFile, mavenProjects, monitor, resolverConfiguration);
+          IPath pomKey = getPomFileKey(project.getFile(Maven2Plugin.POM_FILE_NAME));
+          if(!stalePoms.contains(pomKey)) {
+            ResolverConfiguration resolverConfiguration = BuildPathManager.getResolverConfiguration(JavaCore
+                .create(project));
+            snapshot.setProperty(KEY_CONFIGURATION + pomKey.toPortableString(), //
+                getConfigurationKey(resolverConfiguration));
           }
         }
       } catch(CoreException ex) {
         console.logError("Unable to read project " + project.getName() + "; " + ex.getMessage());
       }
     }
+
+    MavenModelGraph.Snapshot graphSnapshot = graph.getSnapshot();
+    synchronized(pomStamps) {
+      for(Iterator it = graphSnapshot.getModels().keySet().iterator(); it.hasNext();) {
+        IPath pomKey = (IPath) it.next();
+        String stamp = (String) pomStamps.get(pomKey);
+        if(stamp != null) {
+          snapshot.setProperty(KEY_POM + pomKey.toPortableString(), stamp);
+        }
+      }
+    }
+
+    for(Iterator it = graphSnapshot.getProjectsToArtifacts().entrySet().iterator(); it.hasNext();) {
+      Map.Entry e = (Map.Entry) it.next();
+      StringBuffer sb = new StringBuffer();
+      for(Iterator ait = ((Set) e.getValue()).iterator(); ait.hasNext();) {
+        if(sb.length() > 0) {
+          sb.append(',');
+        }
+        sb.append(ait.next());
+      }
+      snapshot.setProperty(KEY_DEPENDENCIES + ((IPath) e.getKey()).toPortableString(), sb.toString());
+    }
+
+    try {
+      snapshotFile.getParentFile().mkdirs();
+      OutputStream os = new BufferedOutputStream(new FileOutputStream(snapshotFile));
+      try {
+        snapshot.store(os, null);
+      } finally {
+        os.close();
+      }
+    } catch(IOException ex) {
+      console.logError("Unable to write " + snapshotFile.getAbsolutePath() + "; " + ex.getMessage());
+    }
+  }
+
+  private Properties loadSnapshot() {
+    if(!snapshotFile.exists()) {
+      return null;
+    }
+
+    Properties snapshot = new Properties();
+    try {
+      InputStream is = new BufferedInputStream(new FileInputStream(snapshotFile));
+      try {
+        snapshot.load(is);
+      } finally {
+        is.close();
+      }
+    } catch(IOException ex) {
+      console.logError("Unable to read " + snapshotFile.getAbsolutePath() + "; " + ex.getMessage());
+      return null;
+    }
+    return SNAPSHOT_VERSION.equals(snapshot.getProperty(KEY_VERSION)) ? snapshot : null;
+  }
+
+  private static String getConfigurationKey(ResolverConfiguration configuration) {
+    return configuration.shouldIncludeModules() + "|" + configuration.shouldResolveWorkspaceProjects() + "|"
+        + configuration.getActiveProfiles();
+  }
+
+  /**
+   * @return size, modification time and hash of the pom file or null if it can't be read
+   */
+  private static String getStamp(IFile pomFile) {
+    IPath location = pomFile.getLocation();
+    if(location == null || !location.toFile().exists()) {
+      return null;
+    }
+    File file = location.toFile();
+    try {
+      return file.length() + ":" + file.lastModified() + ":" + toHex(MavenProjectCache.getHash(file));
+    } catch(IOException ex) {
+      return null;
+    }
+  }
+
+  private void setStamp(IPath pomKey, String stamp) {
+    synchronized(pomStamps) {
+      if(stamp == null) {
+        pomStamps.remove(pomKey);
+      } else {
+        pomStamps.put(pomKey, stamp);
+      }
+    }
+  }
+
+  private static boolean isStampValid(IFile pomFile, String stamp) {
+    IPath location = pomFile.getLocation();
+    if(stamp == null || location == null || !location.toFile().exists()) {
+      return false;
+    }
+    File file = location.toFile();
+    if(stamp.startsWith(file.length() + ":" + file.lastModified() + ":")) {
+      return true;
+    }
+
+    // modification time can be changed without changing the content, e.g. by version control
+    String currentStamp = getStamp(pomFile);
+    return currentStamp != null
+        && currentStamp.substring(currentStamp.lastIndexOf(':')).equals(stamp.substring(stamp.lastIndexOf(':')));
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuffer sb = new StringBuffer(bytes.length * 2);
+    for(int i = 0; i < bytes.length; i++ ) {
+      int b = bytes[i] & 0xff;
+      if(b < 0x10) {
+        sb.append('0');
+      }
+      sb.append(Integer.toHexString(b));
+    }
+    return sb.toString();
   }
 
   private void initMavenModel(IFile pomFile, IFile rootPomFile, Map mavenModels, IProgressMonitor monitor,
       ResolverConfiguration resolverConfiguration) throws CoreException {
-    String pomKey = getPomFileKey(pomFile);
+    IPath pomKey = getPomFileKey(pomFile);
     Model mavenModel = (Model) mavenModels.get(pomKey);
     if(mavenModel == null) {
       mavenModel = updateMavenModel(pomFile, false, monitor);
@@ -195,7 +578,7 @@ public class MavenModelManager {
 
   private void initMavenProject(IFile pomFile, IFile rootPomFile, Map mavenProjects, IProgressMonitor monitor,
       ResolverConfiguration resolverConfiguration) throws CoreException {
-    String pomKey = getPomFileKey(pomFile);
+    IPath pomKey = getPomFileKey(pomFile);
     if(mavenProjects.containsKey(pomKey)) {
       return;
     }
@@ -233,22 +616,51 @@ public class MavenModelManager {
     }
   }
 
-  // add artefact as dependency in project with pomFile
-  public void addProjectArtifact(IFile pomFile, Artifact a) {
-    String artifactKey = getArtifactKey(a);
-    String pomKey = getPomFileKey(pomFile);
+  /**
+   * Marks projects queued for the classpath refresh, so their dependencies are not saved until they are resolved
+   * 
+   * @param projects Collection of IProject
+   */
+  public void addQueuedProjects(Collection projects) {
+    synchronized(pendingProjects) {
+      for(Iterator it = projects.iterator(); it.hasNext();) {
+        queuedProjects.add(getPomFileKey(((IProject) it.next()).getFile(Maven2Plugin.POM_FILE_NAME)));
+      }
+    }
+  }
 
-    getSet(projectsToArtifacts, pomKey).add(artifactKey);
-    getSet(artifactsToProjects, artifactKey).add(pomKey);
+  /**
+   * @return true if dependencies of the project restored on startup are stale and being resolved in background
+   */
+  public boolean isPendingProject(IProject project) {
+    synchronized(pendingProjects) {
+      return pendingProjects.contains(getPomFileKey(project.getFile(Maven2Plugin.POM_FILE_NAME)));
+    }
   }
 
-  private Set getSet(Map map, String key) {
-    Set s = (Set) map.get(key);
-    if(s == null) {
-      s = new HashSet();
-      map.put(key, s);
+  /**
+   * @return true if project is queued for the classpath refresh
+   */
+  public boolean isQueuedProject(IProject project) {
+    synchronized(pendingProjects) {
+      return queuedProjects.contains(getPomFileKey(project.getFile(Maven2Plugin.POM_FILE_NAME)));
     }
-    return s;
+  }
+
+  /**
+   * @param projects Collection of IProject which dependencies have been resolved
+   */
+  public void removeQueuedProjects(Collection projects) {
+    synchronized(pendingProjects) {
+      for(Iterator it = projects.iterator(); it.hasNext();) {
+        queuedProjects.remove(getPomFileKey(((IProject) it.next()).getFile(Maven2Plugin.POM_FILE_NAME)));
+      }
+    }
+  }
+
+  // add artefact as dependency in project with pomFile
+  public void addProjectArtifact(IFile pomFile, Artifact a) {
+    graph.addDependency(getPomFileKey(pomFile), getArtifactKey(a).intern());
   }
 
   /**
@@ -257,19 +669,17 @@ public class MavenModelManager {
   public Set getDependentProjects(IFile pomFile) {
     Set projects = new HashSet();
 
-    Model model = getMavenModel(pomFile);
+    // called for every resolved project, so the graph is queried by key instead of building a snapshot
+    Model model = graph.getModel(getPomFileKey(pomFile));
     if(model != null) {
-      String artifactKey = getArtifactKey(model);
-      Set a = (Set) artifactsToProjects.get(artifactKey);
-      if(a != null) {
-        for(Iterator it = a.iterator(); it.hasNext();) {
-          String pomKey = (String) it.next();
-          Model m = (Model) models.get(pomKey);
-          if(m != null) {
-            IFile f = (IFile) this.artifacts.get(getArtifactKey(m));
-            if(f != null) {
-              projects.add(f.getProject());
-            }
+      ArtifactKey artifactKey = getArtifactKey(model);
+      for(Iterator it = graph.getDependentProjects(artifactKey).iterator(); it.hasNext();) {
+        IPath pomKey = (IPath) it.next();
+        Model m = graph.getModel(pomKey);
+        if(m != null) {
+          IFile f = graph.getArtifactFile(getArtifactKey(m));
+          if(f != null) {
+            projects.add(f.getProject());
           }
         }
       }
@@ -278,26 +688,197 @@ public class MavenModelManager {
     return projects;
   }
 
+  /**
+   * Orders given projects so projects are resolved after projects they depend on. Projects with cyclic dependencies
+   * are kept in the given order.
+   * 
+   * @param projects Collection of IProject
+   * @return List of IProject
+   */
+  public List getResolutionOrder(Collection projects) {
+    // IProject -> Set of IProject from the given set it depends on
+    Map prerequisites = new HashMap();
+    for(Iterator it = projects.iterator(); it.hasNext();) {
+      prerequisites.put(it.next(), new HashSet());
+    }
+    for(Iterator it = projects.iterator(); it.hasNext();) {
+      IProject project = (IProject) it.next();
+      Set projectDependents = getDependentProjects(project.getFile(Maven2Plugin.POM_FILE_NAME));
+      for(Iterator dit = projectDependents.iterator(); dit.hasNext();) {
+        Object dependent = dit.next();
+        Set s = (Set) prerequisites.get(dependent);
+        if(s != null && !project.equals(dependent)) {
+          s.add(project);
+        }
+      }
+    }
+
+    List pending = new ArrayList(projects);
+    List ordered = new ArrayList(pending.size());
+    while(!pending.isEmpty()) {
+      IProject next = null;
+      for(Iterator it = pending.iterator(); it.hasNext();) {
+        IProject p = (IProject) it.next();
+        if(((Set) prerequisites.get(p)).isEmpty()) {
+          next = p;
+          break;
+        }
+      }
+      if(next == null) {
+        // cyclic dependencies
+        next = (IProject) pending.get(0);
+      }
+
+      pending.remove(next);
+      ordered.add(next);
+      for(Iterator it = prerequisites.values().iterator(); it.hasNext();) {
+        ((Set) it.next()).remove(next);
+      }
+    }
+    return ordered;
+  }
+
+  /**
+   * Returns workspace projects which resolved classpath can change when given pom is changed from the old to the new
+   * model. These are projects that have the old or new artifact among their resolved dependencies and workspace
+   * projects inheriting from it, including projects that depend on those. Nothing is affected if none of the pom
+   * sections compared by {@link #isDependencyChange(Model, Model)} is changed.
+   * 
+   * @param oldModel model before the change or null if pom has been added
+   * @param newModel model after the change or null if pom has been removed
+   * @return Set of IProject
+   */
+  public Set getAffectedProjects(IFile pomFile, Model oldModel, Model newModel) {
+    Set projects = new HashSet();
+    if(oldModel != null && newModel != null && !isDependencyChange(oldModel, newModel)) {
+      return projects;
+    }
+
+    LinkedList queue = new LinkedList();
+    if(oldModel != null) {
+      queue.add(getArtifactKey(oldModel));
+    }
+    if(newModel != null) {
+      queue.add(getArtifactKey(newModel));
+    }
+
+    // resolved dependencies are transitive, so only inheriting poms need to be followed
+    Set visited = new HashSet();
+    Set pomKeys = new HashSet();
+    while(!queue.isEmpty()) {
+      ArtifactKey artifactKey = (ArtifactKey) queue.removeFirst();
+      if(!visited.add(artifactKey)) {
+        continue;
+      }
+
+      // answered from the stripe of the key, so graph updates by resolvers don't force a snapshot rebuild
+      pomKeys.addAll(graph.getDependentProjects(artifactKey));
+
+      for(Iterator it = graph.getChildren(artifactKey).iterator(); it.hasNext();) {
+        IPath pomKey = (IPath) it.next();
+        pomKeys.add(pomKey);
+        Model model = graph.getModel(pomKey);
+        if(model != null) {
+          queue.add(getArtifactKey(model));
+        }
+      }
+    }
+
+    IProject project = pomFile.getProject();
+    for(Iterator it = pomKeys.iterator(); it.hasNext();) {
+      IProject p = ResourcesPlugin.getWorkspace().getRoot().getFile((IPath) it.next()).getProject();
+      if(!p.equals(project) && p.isAccessible()) {
+        projects.add(p);
+      }
+    }
+    return projects;
+  }
+
+  /**
+   * @return true if change of the pom can change resolved classpath of the project or the projects using it
+   */
+  public static boolean isDependencyChange(Model oldModel, Model newModel) {
+    // properties can be used in dependency versions, they are compared separately because their order is not stable
+    if(!oldModel.getProperties().equals(newModel.getProperties())) {
+      return true;
+    }
+    String oldSection = getClasspathSection(oldModel);
+    return oldSection == null || !oldSection.equals(getClasspathSection(newModel));
+  }
+
+  /**
+   * @return xml of the model sections, except properties, that can change the classpath of the project or the
+   *         projects using it, or null if model can't be written
+   */
+  private static String getClasspathSection(Model model) {
+    Model section = new Model();
+    section.setGroupId(model.getGroupId());
+    section.setArtifactId(model.getArtifactId());
+    section.setVersion(model.getVersion());
+    section.setPackaging(model.getPackaging());
+    section.setParent(model.getParent());
+    section.setModules(model.getModules());
+    section.setDependencies(model.getDependencies());
+    section.setDependencyManagement(model.getDependencyManagement());
+    section.setRepositories(model.getRepositories());
+    section.setProfiles(model.getProfiles());
+
+    try {
+      StringWriter w = new StringWriter();
+      new MavenXpp3Writer().write(w, section);
+      return w.toString();
+    } catch(IOException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Compares sections of the pom used to resolve the project classpath with the model from the last classpath
+   * resolution. If nothing relevant has been changed, the stored model is replaced with the new one.
+   * 
+   * @return true if classpath of the project has to be resolved again
+   */
+  public boolean isClasspathChanged(IFile pomFile) {
+    IPath pomKey = getPomFileKey(pomFile);
+    Model oldModel = graph.getModel(pomKey);
+    if(oldModel == null || !pomFile.isAccessible() || pomFile.getLocation() == null) {
+      return true;
+    }
+
+    try {
+      MavenEmbedder embedder = embedderManager.getWorkspaceEmbedder();
+      String stamp = getStamp(pomFile);
+      Model newModel = embedder.readModel(pomFile.getLocation().toFile());
+      if(isDependencyChange(oldModel, newModel)) {
+        return true;
+      }
+      graph.putModel(pomKey, newModel);
+      setStamp(pomKey, stamp);
+      return false;
+
+    } catch(XmlPullParserException ex) {
+      // errors are reported when classpath is resolved
+      return true;
+    } catch(IOException ex) {
+      return true;
+    }
+  }
+
   public Model updateMavenModel(IFile pomFile, boolean includeModules, IProgressMonitor monitor) throws CoreException {
     removeMavenModel(pomFile, includeModules, monitor);
     if(!pomFile.isAccessible()) {
       return null;
     }
 
+    // stamp is taken before reading, so concurrent changes make it stale rather than the model
+    String stamp = getStamp(pomFile);
     Model mavenModel = readMavenModel(pomFile);
     if(mavenModel == null) {
       console.logMessage("Unable to read model for " + pomFile.getFullPath().toString());
       return null;
     }
 
-    String pomKey = getPomFileKey(pomFile);
-    models.put(pomKey, mavenModel);
-
-    String artifactKey = getArtifactKey(mavenModel);
-    artifacts.put(artifactKey, pomFile);
-    if(preferenceStore.getBoolean(Maven2PreferenceConstants.P_DEBUG_OUTPUT)) {
-      console.logMessage("Updated model " + pomFile.getFullPath().toString() + " : " + artifactKey);
-    }
+    addMavenModel(pomFile, mavenModel, stamp);
 
     if(includeModules) {
       IContainer parent = pomFile.getParent();
@@ -316,22 +897,29 @@ public class MavenModelManager {
     return mavenModel;
   }
 
+  private void addMavenModel(IFile pomFile, Model mavenModel, String stamp) {
+    IPath pomKey = getPomFileKey(pomFile);
+    graph.putModel(pomKey, mavenModel);
+    setStamp(pomKey, stamp);
+
+    ArtifactKey artifactKey = getArtifactKey(mavenModel);
+    graph.putArtifactFile(artifactKey.intern(), pomFile);
+    if(preferenceStore.getBoolean(Maven2PreferenceConstants.P_DEBUG_OUTPUT)) {
+      console.logMessage("Updated model " + pomFile.getFullPath().toString() + " : " + artifactKey);
+    }
+  }
+
   public Model removeMavenModel(IFile pomFile, boolean recursive, IProgressMonitor monitor) {
-    String pomKey = getPomFileKey(pomFile);
-    Model mavenModel = (Model) models.remove(pomKey);
-
-    projectsToArtifacts.remove(pomKey);
-//    if(artifacts!=null) {
-//      for(Iterator it = artifacts.iterator(); it.hasNext();) {
-//        String artifactKey = (String) it.next();
-//        artifactsToProjects.remove(artifactKey);
-//      }
-//    }
+    IPath pomKey = getPomFileKey(pomFile);
+    Model mavenModel = graph.removeModel(pomKey);
+
+    graph.removeDependencies(pomKey);
+    setStamp(pomKey, null);
 
     if(mavenModel != null) {
-      String artifactKey = getArtifactKey(mavenModel);
+      ArtifactKey artifactKey = getArtifactKey(mavenModel);
 
-      artifacts.remove(artifactKey);
+      graph.removeArtifactFile(artifactKey);
 
       if(preferenceStore.getBoolean(Maven2PreferenceConstants.P_DEBUG_OUTPUT)) {
         console.logMessage("Removed model " + pomFile.getFullPath().toString() + " : " + artifactKey);
@@ -403,9 +991,13 @@ public class MavenModelManager {
 
   public MavenExecutionResult readMavenProject(File pomFile, IProgressMonitor monitor, 
       boolean offline, boolean debug, ResolverConfiguration resolverConfiguration) {
-    MavenEmbedder embedder = embedderManager.createEmbedder( // 
-        EmbedderFactory.createWorkspaceCustomizer(resolverConfiguration.shouldResolveWorkspaceProjects()));
-    return readMavenProject(pomFile, monitor, offline, debug, resolverConfiguration, embedder);
+    int embedderType = MavenEmbedderManager.getEmbedderType(resolverConfiguration.shouldResolveWorkspaceProjects());
+    MavenEmbedder embedder = embedderManager.checkoutEmbedder(embedderType);
+    try {
+      return readMavenProject(pomFile, monitor, offline, debug, resolverConfiguration, embedder);
+    } finally {
+      embedderManager.releaseEmbedder(embedderType, embedder);
+    }
   }
   
   public MavenExecutionResult readMavenProject(File pomFile, IProgressMonitor monitor, //
@@ -468,29 +1060,232 @@ public class MavenModelManager {
     }
   }
 
-  public static String getArtifactKey(Model model) {
-    String groupId = model.getGroupId();
-    if(groupId == null) {
-      // If the groupId is null in the model, then it needs to be inherited
-      // from the parent.  And the parent's groupId has to be specified in the
-      // in the parent element of the model.
-      groupId = model.getParent()==null ? "[unknown]" : model.getParent().getGroupId();
-    }
+  public static ArtifactKey getArtifactKey(Model model) {
+    return ArtifactKey.get(model);
+  }
+
+  public static ArtifactKey getArtifactKey(Artifact a) {
+    return ArtifactKey.get(a);
+  }
 
-    String version = model.getVersion();
-    if(version == null) {
-      version = model.getParent()==null ? "[unknown]" : model.getParent().getVersion();
+  /**
+   * @return workspace path of the pom, which is kept by the resource, so no new objects are created for the key
+   */
+  public static IPath getPomFileKey(IFile pomFile) {
+    return pomFile.getFullPath();
+  }
+
+
+  /**
+   * Resolves dependencies of the projects that have been changed since the snapshot was saved
+   */
+  private final class ModelUpdateJob extends Job {
+    /** IFile -> ResolverConfiguration */
+    private final Map configurations;
+    private final int threads;
+
+    ModelUpdateJob(Map configurations, int threads) {
+      super("Updating Maven models");
+      this.configurations = configurations;
+      this.threads = threads;
+      setPriority(Job.LONG);
     }
 
-    return groupId + ":" + model.getArtifactId() + ":" + version;
+    protected IStatus run(IProgressMonitor monitor) {
+      monitor.beginTask(getName(), IProgressMonitor.UNKNOWN);
+      try {
+        long l1 = System.currentTimeMillis();
+        initMavenProjects(configurations, threads, monitor);
+        long l2 = System.currentTimeMillis();
+        console.logMessage("Resolved " + configurations.size() + " changed Maven projects in " + (l2 - l1) + " ms");
+
+        synchronized(pendingProjects) {
+          for(Iterator it = configurations.keySet().iterator(); it.hasNext();) {
+            pendingProjects.remove(getPomFileKey((IFile) it.next()));
+          }
+        }
+      } catch(OperationCanceledException ex) {
+        return Status.CANCEL_STATUS;
+      } finally {
+        monitor.done();
+      }
+      return Status.OK_STATUS;
+    }
   }
 
-  public static String getArtifactKey(Artifact a) {
-    return a.getGroupId() + ":" + a.getArtifactId() + ":" + a.getVersion();
+
+  /**
+   * Reads models or resolves dependencies of the workspace poms and their modules using a pool of worker threads.
+   * Results are merged into the model maps by the calling thread.
+   */
+  private final class ParallelInitializer {
+    private final boolean resolveProjects;
+
+    /** queue of InitTask */
+    private final LinkedList queue = new LinkedList();
+    /** pom keys of the queued poms */
+    private final Set queued = new HashSet();
+    /** List of completed InitTask */
+    private final List results = new ArrayList();
+    /** number of queued and currently processed poms */
+    private int pending = 0;
+    private boolean canceled = false;
+    private IFile current;
+
+    ParallelInitializer(boolean resolveProjects) {
+      this.resolveProjects = resolveProjects;
+    }
+
+    /**
+     * @return List of completed InitTask
+     */
+    public List run(Map configurations, int threads, IProgressMonitor monitor) {
+      synchronized(this) {
+        for(Iterator it = configurations.entrySet().iterator(); it.hasNext();) {
+          Map.Entry e = (Map.Entry) it.next();
+          IFile pomFile = (IFile) e.getKey();
+          add(new InitTask(pomFile, pomFile, (ResolverConfiguration) e.getValue()));
+        }
+      }
+
+      String name = resolveProjects ? "Resolving Maven projects" : "Reading Maven models";
+      Thread[] workers = new Thread[Math.min(threads, Math.max(1, pending))];
+      for(int i = 0; i < workers.length; i++ ) {
+        workers[i] = new Thread(name + " #" + i) {
+          public void run() {
+            MavenEmbedderManager.clearBuildContext();
+            processQueue();
+          }
+        };
+        workers[i].setDaemon(true);
+        workers[i].start();
+      }
+
+      try {
+        synchronized(this) {
+          while(pending > 0) {
+            if(monitor.isCanceled()) {
+              break;
+            }
+            try {
+              wait(500L);
+            } catch(InterruptedException ex) {
+              break;
+            }
+            if(current != null) {
+              monitor.subTask(current.getFullPath().toString());
+              current = null;
+            }
+          }
+          canceled = true;
+          notifyAll();
+        }
+
+      } finally {
+        for(int i = 0; i < workers.length; i++ ) {
+          try {
+            workers[i].join();
+          } catch(InterruptedException ex) {
+            // ignore
+          }
+        }
+      }
+
+      if(monitor.isCanceled()) {
+        throw new OperationCanceledException();
+      }
+      return results;
+    }
+
+    void processQueue() {
+      InitTask task;
+      while((task = nextTask()) != null) {
+        List modules = new ArrayList();
+        try {
+          if(resolveProjects) {
+            MavenExecutionResult result = readMavenProject(task.pomFile.getLocation().toFile(),
+                new NullProgressMonitor(), true, false, task.configuration);
+            MavenProject mavenProject = result.getProject();
+            if(mavenProject != null) {
+              task.artifacts = mavenProject.getArtifacts();
+              addModules(task, mavenProject.getModules(), modules);
+            }
+          } else if(task.pomFile.isAccessible()) {
+            task.stamp = getStamp(task.pomFile);
+            task.model = readMavenModel(task.pomFile);
+            addModules(task, task.model.getModules(), modules);
+          }
+        } catch(CoreException ex) {
+          console.logError("Unable to read project " + task.pomFile.getProject().getName() + "; " + ex.getMessage());
+        } finally {
+          taskDone(task, modules);
+        }
+      }
+    }
+
+    private void addModules(InitTask task, List moduleNames, List modules) {
+      if(!task.configuration.shouldIncludeModules()) {
+        return;
+      }
+      IContainer parent = task.pomFile.getParent();
+      for(Iterator it = moduleNames.iterator(); it.hasNext();) {
+        String module = (String) it.next();
+        IResource memberPom = parent.findMember(module + "/" + Maven2Plugin.POM_FILE_NAME); //$NON-NLS-1$
+        if(memberPom != null && memberPom.getType() == IResource.FILE && memberPom.isAccessible()) {
+          modules.add(new InitTask((IFile) memberPom, task.rootPomFile, task.configuration));
+        }
+      }
+    }
+
+    private void add(InitTask task) {
+      // each pom is processed once, same as in the sequential initialization
+      if(queued.add(getPomFileKey(task.pomFile))) {
+        queue.add(task);
+        pending++;
+      }
+    }
+
+    private synchronized InitTask nextTask() {
+      while(queue.isEmpty() && pending > 0 && !canceled) {
+        try {
+          wait();
+        } catch(InterruptedException ex) {
+          return null;
+        }
+      }
+      if(canceled || queue.isEmpty()) {
+        return null;
+      }
+      return (InitTask) queue.removeFirst();
+    }
+
+    private synchronized void taskDone(InitTask task, List modules) {
+      for(Iterator it = modules.iterator(); it.hasNext();) {
+        add((InitTask) it.next());
+      }
+      results.add(task);
+      pending--;
+      current = task.pomFile;
+      notifyAll();
+    }
   }
 
-  public static String getPomFileKey(IFile pomFile) {
-    return pomFile.getFullPath().toPortableString();
+
+  private static final class InitTask {
+    final IFile pomFile;
+    final IFile rootPomFile;
+    final ResolverConfiguration configuration;
+
+    Model model;
+    String stamp;
+    /** Set of Artifact */
+    Set artifacts;
+
+    InitTask(IFile pomFile, IFile rootPomFile, ResolverConfiguration configuration) {
+      this.pomFile = pomFile;
+      this.rootPomFile = rootPomFile;
+      this.configuration = configuration;
+    }
   }
 
 }
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.maven.ide.eclipse.embedder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.project.MavenProject;
+
+
+/**
+ * Bounded cache of the resolved Maven projects used between classpath container refreshes. Cached project is reused
+ * while content of its pom.xml and parent poms is not changed and it is resolved with the same profiles, offline mode
+ * and local repository. Least recently used projects are dropped when cache is full.
+ */
+public class MavenProjectCache {
+  /** default max number of cached projects */
+  private static final int MAX_ENTRIES = 200;
+
+  /** pom file path -> CacheEntry, in access order */
+  private final Map entries;
+
+  public MavenProjectCache() {
+    this(MAX_ENTRIES);
+  }
+
+  public MavenProjectCache(final int maxEntries) {
+    this.entries = new LinkedHashMap(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      protected boolean removeEldestEntry(Map.Entry eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  public synchronized MavenProject get(File pomFile, ResolverConfiguration configuration, boolean offline,
+      String localRepository) {
+    String path = pomFile.getAbsolutePath();
+    CacheEntry entry = (CacheEntry) entries.get(path);
+    if(entry == null) {
+      return null;
+    }
+
+    if(!entry.key.equals(getKey(configuration, offline, localRepository)) || !entry.isValid()) {
+      entries.remove(path);
+      return null;
+    }
+
+    return entry.mavenProject;
+  }
+
+  public synchronized void put(File pomFile, ResolverConfiguration configuration, boolean offline,
+      String localRepository, MavenProject mavenProject) {
+    try {
+      List files = new ArrayList();
+      files.add(pomFile);
+      for(MavenProject parent = mavenProject.getParent(); parent != null; parent = parent.getParent()) {
+        if(parent.getFile() != null) {
+          files.add(parent.getFile());
+        }
+      }
+
+      List hashes = new ArrayList(files.size());
+      for(Iterator it = files.iterator(); it.hasNext();) {
+        hashes.add(getHash((File) it.next()));
+      }
+
+      Set dependencies = new HashSet();
+      for(Iterator it = mavenProject.getArtifacts().iterator(); it.hasNext();) {
+        Artifact a = (Artifact) it.next();
+        dependencies.add(a.getGroupId() + ":" + a.getArtifactId());
+      }
+
+      entries.put(pomFile.getAbsolutePath(), new CacheEntry(getKey(configuration, offline, localRepository),
+          mavenProject, files, hashes, dependencies));
+
+    } catch(IOException ex) {
+      // project is not cached if pom can't be read
+      entries.remove(pomFile.getAbsolutePath());
+    }
+  }
+
+  /**
+   * Removes cached project for the given pom and all cached projects that depend on it if content of the pom or its
+   * parents has been changed.
+   * 
+   * @param projectKey groupId:artifactId of the pom used when the pom is not cached or <code>null</code> if unknown
+   */
+  public synchronized void pomChanged(File pomFile, String projectKey) {
+    CacheEntry entry = (CacheEntry) entries.get(pomFile.getAbsolutePath());
+    if(entry == null || !entry.isValid()) {
+      invalidate(pomFile, projectKey);
+    }
+  }
+
+  /**
+   * Removes cached project for the given pom and all cached projects that depend on it.
+   * 
+   * @param projectKey groupId:artifactId of the pom used when the pom is not cached or <code>null</code> if unknown
+   */
+  public synchronized void invalidate(File pomFile, String projectKey) {
+    CacheEntry entry = (CacheEntry) entries.remove(pomFile.getAbsolutePath());
+    if(entry != null) {
+      projectKey = entry.mavenProject.getGroupId() + ":" + entry.mavenProject.getArtifactId();
+    } else if(projectKey == null) {
+      // don't know what depends on this pom
+      entries.clear();
+      return;
+    }
+
+    for(Iterator it = entries.values().iterator(); it.hasNext();) {
+      CacheEntry e = (CacheEntry) it.next();
+      if(e.dependencies.contains(projectKey)) {
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes all cached projects, e.g. when Maven settings have been changed
+   */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  private static String getKey(ResolverConfiguration configuration, boolean offline, String localRepository) {
+    return configuration.getActiveProfiles() + "|" + configuration.shouldResolveWorkspaceProjects() + "|" + offline
+        + "|" + localRepository;
+  }
+
+  static byte[] getHash(File file) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("MD5");
+    } catch(NoSuchAlgorithmException ex) {
+      throw new IOException("Unable to calculate hash; " + ex.getMessage());
+    }
+
+    InputStream is = new FileInputStream(file);
+    try {
+      byte[] buf = new byte[4096];
+      int n;
+      while((n = is.read(buf)) > -1) {
+        digest.update(buf, 0, n);
+      }
+    } finally {
+      is.close();
+    }
+    return digest.digest();
+  }
+
+
+  private static final class CacheEntry {
+    final String key;
+    final MavenProject mavenProject;
+    final List files;
+    final List hashes;
+    final Set dependencies;
+
+    CacheEntry(String key, MavenProject mavenProject, List files, List hashes, Set dependencies) {
+      this.key = key;
+      this.mavenProject = mavenProject;
+      this.files = files;
+      this.hashes = hashes;
+      this.dependencies = dependencies;
+    }
+
+    boolean isValid() {
+      for(int i = 0; i < files.size(); i++ ) {
+        File file = (File) files.get(i);
+        try {
+          if(!file.exists() || !Arrays.equals((byte[]) hashes.get(i), getHash(file))) {
+            return false;
+          }
+        } catch(IOException ex) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.maven.ide.eclipse.embedder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.maven.ide.eclipse.launch.console.Maven2Console;
+import org.maven.ide.eclipse.preferences.Maven2PreferenceConstants;
+
+
+/**
+ * Remembers sources and javadoc archives that are not available in the remote repositories, so they are not
+ * requested again on every classpath refresh. Entries are stored in the plugin state location and expire after the
+ * number of hours configured in the preferences.
+ */
+public class MissingAttachmentCache {
+  private final File file;
+  private final IPreferenceStore preferenceStore;
+  private final Maven2Console console;
+
+  /** key -> time when archive was found missing */
+  private Properties entries;
+  private boolean changed = false;
+
+  public MissingAttachmentCache(File file, IPreferenceStore preferenceStore, Maven2Console console) {
+    this.file = file;
+    this.preferenceStore = preferenceStore;
+    this.console = console;
+  }
+
+  /**
+   * @param classifier attachment classifier, i.e. "sources" or "javadoc"
+   * @param remoteRepositories list of ArtifactRepository
+   */
+  public synchronized boolean isMissing(Artifact a, String classifier, List remoteRepositories) {
+    String key = getKey(a, classifier, remoteRepositories);
+    String value = getEntries().getProperty(key);
+    if(value == null) {
+      return false;
+    }
+
+    long ttl = preferenceStore.getInt(Maven2PreferenceConstants.P_MISSING_ATTACHMENTS_TTL) * 60L * 60L * 1000L;
+    try {
+      if(System.currentTimeMillis() - Long.parseLong(value) < ttl) {
+        return true;
+      }
+    } catch(NumberFormatException ex) {
+      // expire invalid entry
+    }
+
+    getEntries().remove(key);
+    changed = true;
+    return false;
+  }
+
+  public synchronized void setMissing(Artifact a, String classifier, List remoteRepositories) {
+    getEntries().setProperty(getKey(a, classifier, remoteRepositories), Long.toString(System.currentTimeMillis()));
+    changed = true;
+  }
+
+  /**
+   * Forgets all missing archives, so they are requested again on next classpath refresh
+   */
+  public synchronized void clear() {
+    entries = new Properties();
+    changed = true;
+    save();
+  }
+
+  public synchronized void save() {
+    if(!changed) {
+      return;
+    }
+
+    try {
+      file.getParentFile().mkdirs();
+      OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+      try {
+        getEntries().store(os, null);
+      } finally {
+        os.close();
+      }
+      changed = false;
+    } catch(IOException ex) {
+      console.logError("Unable to write " + file.getAbsolutePath() + "; " + ex.getMessage());
+    }
+  }
+
+  private Properties getEntries() {
+    if(entries == null) {
+      entries = new Properties();
+      if(file.exists()) {
+        try {
+          InputStream is = new BufferedInputStream(new FileInputStream(file));
+          try {
+            entries.load(is);
+          } finally {
+            is.close();
+          }
+        } catch(IOException ex) {
+          console.logError("Unable to read " + file.getAbsolutePath() + "; " + ex.getMessage());
+        }
+      }
+    }
+    return entries;
+  }
+
+  private static String getKey(Artifact a, String classifier, List remoteRepositories) {
+    StringBuffer sb = new StringBuffer();
+    sb.append(a.getGroupId()).append(':').append(a.getArtifactId()).append(':').append(a.getVersion());
+    if(a.getClassifier() != null) {
+      sb.append(':').append(a.getClassifier());
+    }
+    sb.append(':').append(classifier);
+    if(remoteRepositories != null) {
+      for(Iterator it = remoteRepositories.iterator(); it.hasNext();) {
+        sb.append(' ').append(((ArtifactRepository) it.next()).getUrl());
+      }
+    }
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,136 @@
+package org.maven.ide.eclipse.index;
+
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.lucene.index.IndexReader;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.maven.ide.eclipse.Maven2Plugin;
+
+
+/**
+ * Adds downloaded files to the index. Files are queued and added in batches using single index writer.
+ */
+class IndexUpdaterJob extends Job {
+  /** delay used to collect files downloaded together */
+  private static final long BATCH_DELAY = 1000L;
+
+  private final String indexName;
+  private final File indexDir;
+  private final MavenRepositoryIndexManager indexManager;
+
+  private final List queue = new ArrayList();
+
+  public IndexUpdaterJob(String indexName, File indexDir, MavenRepositoryIndexManager indexManager) {
+    super("Updating index " + indexName);
+    this.indexName = indexName;
+    this.indexDir = indexDir;
+    this.indexManager = indexManager;
+    
+    setPriority(Job.LONG);
+    setSystem(true);
+  }
+
+  public void addFile(File file, String repository, String name, long size, long date) {
+    synchronized(queue) {
+      queue.add(new IndexUpdate(file, repository, name, size, date));
+    }
+    // running job will be rescheduled once it is done
+    schedule(BATCH_DELAY);
+  }
+
+  protected IStatus run(IProgressMonitor monitor) {
+    List updates;
+    synchronized(queue) {
+      updates = new ArrayList(queue);
+      queue.clear();
+    }
+    if(updates.isEmpty()) {
+      return Status.OK_STATUS;
+    }
+    
+    if(!IndexReader.indexExists(indexDir)) {
+      // index is not created yet and these files will be picked up by the repository walk
+      return Status.OK_STATUS;
+    }
+
+    monitor.beginTask(getName(), updates.size() + 1);
+    try {
+      Indexer indexer = new Indexer();
+      List documents = new ArrayList(updates.size());
+      for(Iterator it = updates.iterator(); it.hasNext();) {
+        IndexUpdate update = (IndexUpdate) it.next();
+        monitor.subTask(update.name);
+        String sha1 = null;
+        String names = null;
+        if(update.name.endsWith(".jar")) {
+          try {
+            sha1 = Indexer.getSha1(update.file);
+            names = indexer.readNames(update.file);
+          } catch(IOException ex) {
+            indexManager.console.logError("Unable to read " + update.file.getAbsolutePath() + "; " + ex.getMessage());
+          }
+        }
+        documents.addAll(Indexer.getDocuments(update.repository, update.name, update.size, update.date, sha1, names));
+        monitor.worked(1);
+      }
+      
+      indexer.updateDocuments(documents, indexDir.getAbsolutePath());
+      indexManager.indexChanged(indexName);
+      monitor.worked(1);
+      
+    } catch(IOException ex) {
+      String msg = "Unable to update index " + indexName;
+      indexManager.console.logError(msg + "; " + ex.getMessage());
+      Maven2Plugin.log(msg, ex);
+      
+    } finally {
+      monitor.done();
+    }
+    return Status.OK_STATUS;
+  }
+
+
+  private static final class IndexUpdate {
+    final File file;
+    final String repository;
+    final String name;
+    final long size;
+    final long date;
+
+    IndexUpdate(File file, String repository, String name, long size, long date) {
+      this.file = file;
+      this.repository = repository;
+      this.name = name;
+      this.size = size;
+      this.date = date;
+    }
+  }
+
+}
@@ -21,33 +21,52 @@ package org.maven.ide.eclipse.index;
  */
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.StringTokenizer;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.Hits;
+import org.apache.lucene.search.MultiPhraseQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.PrefixFilter;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.maven.model.Dependency;
 
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -64,26 +83,164 @@ public class Indexer {
   public static final String JAR_NAME = "j";
   public static final String JAR_SIZE = "s";
   public static final String JAR_DATE = "d";
+  /** 
+   * Newline separated class names of the jar. Only used by indexes created before per-class documents. 
+   * Also used as a query field for class search. 
+   */
   public static final String NAMES = "c";
+  /** untokenized jar name used to delete or replace documents during incremental reindex */
+  public static final String JAR_KEY = "k";
+  /** hex encoded SHA-1 checksum of the jar */
+  public static final String SHA1 = "h";
+
+  /** class name as in jar entry, e.g. org/apache/commons/logging/Log */
+  public static final String CLASS_ENTRY = "e";
+  /** lowercased class name without package */
+  public static final String CLASS_NAME = "n";
+  /** lowercased qualified class name */
+  public static final String CLASS_QNAME = "q";
+  /** lowercased package name */
+  public static final String PACKAGE_NAME = "p";
+
+  /** format of the documents, stored in a separate document when index is created */
+  private static final String INDEX_FORMAT = "v";
+  /** per-class documents and jar checksums, increment when documents are changed */
+  private static final String FORMAT_VERSION = "1";
   
   public long totalClasses = 0;
   public long totalFiles = 0;
   public long totalSize = 0;
   
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  /** characters separating terms of the phrase query */
+  static final String QUERY_SEPARATORS = " .-/\\";
+
   private long lastTime = System.currentTimeMillis();
 
+  /** jars that could not be read */
+  private final List errors = new ArrayList();
+
+  /**
+   * Number of worker threads used by {@link #reindex(String, String, String, IProgressMonitor)}. 
+   * When set to 1 repository is walked on the calling thread.
+   */
+  private int threads = 1;
+
+  /**
+   * Name, date and size of the documents already in the index, used by incremental reindex.
+   * <code>null</code> when index is created from scratch.
+   */
+  private IndexState indexState;
+
+  public void setThreads(int threads) {
+    this.threads = Math.max(1, threads);
+  }
+
   public Map search( File[] indexes, String query, String field) throws IOException {
     if(query==null || query.length()==0) {
       return Collections.EMPTY_MAP;
     }
     
+    IndexReader[] readers = new IndexReader[indexes.length];
+    try {
+      for(int i = 0; i < indexes.length; i++ ) {
+        readers[i] = IndexReader.open(indexes[i]);
+      }
+
+      return search(new IndexSearcher(new MultiReader(readers)), query, field);
+
+    } finally {
+      for(int i = 0; i < readers.length; i++ ) {
+        try {
+          if(readers[i] != null) {
+            readers[i].close();
+          }
+        } catch(IOException ex) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  /**
+   * Search using given searcher. Searcher is not closed, so it can be reused between queries.
+   */
+  public Map search(IndexSearcher searcher, String query, String field) throws IOException {
+    if(query==null || query.length()==0) {
+      return Collections.EMPTY_MAP;
+    }
+    
+    Hits hits = searcher.search(createQuery(query, field, searcher.getIndexReader()));
+    if(hits == null || hits.length() == 0) {
+      return Collections.EMPTY_MAP;
+    }
+    return sortResults(query, field, hits, searcher.getIndexReader());
+  }
+
+  /**
+   * Search returning at most <code>limit</code> artifacts, ordered by relevance. Only the top ranked 
+   * documents are read from the index, so broad queries don't materialize all matches.
+   */
+  public SearchResult search(IndexSearcher searcher, String query, String field, int limit) throws IOException {
+    if(query==null || query.length()==0) {
+      return new SearchResult(Collections.EMPTY_MAP, 0);
+    }
+
+    IndexReader reader = searcher.getIndexReader();
+    Query q = createQuery(query, field, reader);
+    Map res = new LinkedHashMap();
+    Map fileInfos = new HashMap();
+    
+    // several documents can be merged into one artifact, so read more documents than needed
+    int n = Math.max(limit, 10) * 2;
+    int skipped = 0;
+    int consumed = 0;
+    TopDocs topDocs;
+    while(true) {
+      topDocs = searcher.search(q, null, n);
+      ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+      for(; consumed < scoreDocs.length; consumed++ ) {
+        Document doc = reader.document(scoreDocs[consumed].doc);
+        if(!addResults(res, limit, doc, query, field, reader, fileInfos)) {
+          skipped++;
+        }
+      }
+      if(res.size() >= limit || consumed >= topDocs.totalHits || n > Integer.MAX_VALUE / 2) {
+        break;
+      }
+      n *= 2;
+    }
+    
+    return new SearchResult(res, skipped + topDocs.totalHits - consumed);
+  }
+
+  private Query createQuery(String query, String field, IndexReader reader) throws IOException {
+    Query q = createFieldQuery(query, field, reader);
+    if(NAMES.equals(field)) {
+      BooleanQuery bq = new BooleanQuery();
+      bq.add(q, Occur.SHOULD);
+      bq.add(createClassQuery(query.toLowerCase()), Occur.SHOULD);
+      q = bq;
+    }
+    return q;
+  }
+
+  private Query createFieldQuery(String query, String field, IndexReader reader) throws IOException {
     Query q;
     if(query.indexOf('*') > -1) {
       q = new WildcardQuery(new Term(field, query));
     } else {
-      String[] terms = query.split("[\\. -/\\\\]");
+      String[] terms = getQueryTerms(query);
       int len = terms.length;
-      if(len > 1) {
+      if(len > 1 && JAR_NAME.equals(field)) {
+        // last term is still being typed, so it is matched as a prefix the same way as a single term
+        q = new MultiPhraseQuery();
+        for(int i = 0; i < len - 1; i++ ) {
+          ((MultiPhraseQuery) q).add(new Term(field, terms[i]));
+        }
+        ((MultiPhraseQuery) q).add(getPrefixTerms(reader, field, terms[len - 1]));
+      } else if(len > 1) {
         q = new PhraseQuery();
         for(int i = 0; i < len; i++ ) {
           ((PhraseQuery) q).add(new Term(field, terms[i]));
@@ -93,97 +250,197 @@ public class Indexer {
         q = new WildcardQuery(new Term(field, query + "*"));
       }
     }
-      
-    IndexReader[] readers = new IndexReader[indexes.length];
-    try {
-      for(int i = 0; i < indexes.length; i++ ) {
-        readers[i] = IndexReader.open(indexes[i]);
-      }
-
-      IndexSearcher searcher = new IndexSearcher(new MultiReader(readers));
-      Hits hits = searcher.search(q);
+    return q;
+  }
 
-      if(hits == null || hits.length() == 0) {
-        return Collections.EMPTY_MAP;
-      }
-      return sortResults(query, field, hits);
+  /**
+   * Splits query into the terms of a phrase. Terms are separated by dots, spaces, dashes and slashes.
+   */
+  static String[] getQueryTerms(String query) {
+    List terms = new ArrayList();
+    StringTokenizer st = new StringTokenizer(query, QUERY_SEPARATORS);
+    while(st.hasMoreTokens()) {
+      terms.add(st.nextToken());
+    }
+    return (String[]) terms.toArray(new String[terms.size()]);
+  }
 
-    } finally {
-      for(int i = 0; i < readers.length; i++ ) {
-        try {
-          readers[i].close();
-        } catch(IOException ex) {
-          // ignore
+  /**
+   * Returns index terms of the given field starting with the given prefix
+   */
+  private static Term[] getPrefixTerms(IndexReader reader, String field, String prefix) throws IOException {
+    List terms = new ArrayList();
+    TermEnum te = reader.terms(new Term(field, prefix));
+    try {
+      do {
+        Term term = te.term();
+        if(term == null || !field.equals(term.field()) || !term.text().startsWith(prefix)) {
+          break;
         }
+        terms.add(term);
+      } while(te.next());
+    } finally {
+      te.close();
+    }
+    if(terms.isEmpty()) {
+      // nothing starts with the prefix, query won't match
+      terms.add(new Term(field, prefix));
+    }
+    return (Term[]) terms.toArray(new Term[terms.size()]);
+  }
+
+  /**
+   * Query for per-class documents. Class name is matched when there is no dot in the query, 
+   * otherwise qualified class name or package prefix is matched.
+   */
+  private Query createClassQuery(String query) {
+    if(query.indexOf('.') == -1) {
+      int n = query.indexOf('*');
+      if(n == -1) {
+        return new TermQuery(new Term(CLASS_NAME, query));
+      } else if(n == query.length() - 1) {
+        return new ConstantScoreQuery(new PrefixFilter(new Term(CLASS_NAME, query.substring(0, n))));
       }
+      return new WildcardQuery(new Term(CLASS_NAME, query));
+    }
+    
+    if(query.indexOf('*') > -1) {
+      return new WildcardQuery(new Term(CLASS_QNAME, query));
     }
+    BooleanQuery q = new BooleanQuery();
+    q.add(new TermQuery(new Term(CLASS_QNAME, query)), Occur.SHOULD);
+    q.add(new ConstantScoreQuery(new PrefixFilter(new Term(PACKAGE_NAME, query))), Occur.SHOULD);
+    return q;
   }
 
-  private TreeMap sortResults(String query, String field, Hits hits) throws IOException {
+  private TreeMap sortResults(String query, String field, Hits hits, IndexReader reader) throws IOException {
     TreeMap res = new TreeMap();
+    // artifact documents for the class documents
+    Map fileInfos = new HashMap();
     for( int i = 0; i < hits.length(); i++) {
-      Document doc = hits.doc( i);
-      FileInfo fileInfo = FileInfo.getFileInfo(doc);
-      if(fileInfo==null) continue;
-
-      if(JAR_NAME.equals(field)) {
-        addFile(res, fileInfo, null, null);
-
-      } else if(NAMES.equals( field )) {
-        String[] entries = doc.get(NAMES).split( "\n");
-        for( int j = 0; j < entries.length; j++) {
-          String entry = entries[j];
-          if(query.indexOf( '.' )==-1) {
-            // class name
-            int n = entry.lastIndexOf("/");
-            String className = entry.substring(n==-1 ? 0 : n+1);
-            String packageName = n==-1 ? "" : entry.substring( 0, n).replace('/', '.');
-            
-            if( query.endsWith( "*")) {
-              int queryLength = query.length();
-              if(query.charAt( 0 )=='*' ? 
-                  className.toLowerCase().indexOf( query.substring( 1, queryLength-2 ) )>1 : 
-                  className.toLowerCase().startsWith( query.substring( 0, queryLength-2 ) ) ) {
-                addFile( res, fileInfo, className, packageName );
-              }
-            } else {
-              if(query.charAt( 0 )=='*' ? 
-                  className.toLowerCase().endsWith( query.substring( 1 ) ) : 
-                  className.equalsIgnoreCase( query ) ) {
-                addFile( res, fileInfo, className, packageName );
-              }
+      addResults(res, Integer.MAX_VALUE, hits.doc(i), query, field, reader, fileInfos);
+    }
+    return res;
+  }
+
+  /**
+   * Adds results for given document. New artifacts are not added when result already have <code>limit</code>
+   * entries, in which case false is returned.
+   * 
+   * @param fileInfos cache for the artifact documents linked from the class documents
+   */
+  private boolean addResults(Map res, int limit, Document doc, String query, String field, IndexReader reader,
+      Map fileInfos) throws IOException {
+    boolean added = true;
+
+    String classEntry = doc.get(CLASS_ENTRY);
+    if(classEntry != null) {
+      String jarKey = doc.get(JAR_KEY);
+      FileInfo fileInfo = (FileInfo) fileInfos.get(jarKey);
+      if(fileInfo == null && !fileInfos.containsKey(jarKey)) {
+        fileInfo = getFileInfo(reader, jarKey);
+        fileInfos.put(jarKey, fileInfo);
+      }
+      if(fileInfo != null) {
+        added = addClass(res, limit, fileInfo, classEntry, query);
+      }
+      return added;
+    }
+      
+    FileInfo fileInfo = FileInfo.getFileInfo(doc);
+    if(fileInfo==null) return added;
+
+    if(JAR_NAME.equals(field)) {
+      added = addFile(res, limit, fileInfo, null, null);
+
+    } else if(NAMES.equals( field )) {
+      String[] entries = doc.get(NAMES).split( "\n");
+      for( int j = 0; j < entries.length; j++) {
+        String entry = entries[j];
+        if(query.indexOf( '.' )==-1) {
+          // class name
+          int n = entry.lastIndexOf("/");
+          String className = entry.substring(n==-1 ? 0 : n+1);
+          String packageName = n==-1 ? "" : entry.substring( 0, n).replace('/', '.');
+          
+          if( query.endsWith( "*")) {
+            int queryLength = query.length();
+            if(query.charAt( 0 )=='*' ? 
+                className.toLowerCase().indexOf( query.substring( 1, queryLength-2 ) )>1 : 
+                className.toLowerCase().startsWith( query.substring( 0, queryLength-2 ) ) ) {
+              added &= addFile( res, limit, fileInfo, className, packageName );
             }
-            
           } else {
-            // qualified class or package
-            if( entry.equals(query.replace( '.', '/' )) ) {
-              // qualified class name
-              int n = entry.lastIndexOf("/");
-              String className = entry.substring(n==-1 ? 0 : n+1);
-              String packageName = n==-1 ? "" : entry.substring( 0, n).replace('/', '.');
-              addFile( res, fileInfo, className, packageName );
-            
-            } else if( entry.startsWith(query.replace( '.', '/' )) ) {
-              // package name
-              addFile( res, fileInfo, null, query );
-            
+            if(query.charAt( 0 )=='*' ? 
+                className.toLowerCase().endsWith( query.substring( 1 ) ) : 
+                className.equalsIgnoreCase( query ) ) {
+              added &= addFile( res, limit, fileInfo, className, packageName );
             }
           }
+          
+        } else {
+          // qualified class or package
+          if( entry.equals(query.replace( '.', '/' )) ) {
+            // qualified class name
+            int n = entry.lastIndexOf("/");
+            String className = entry.substring(n==-1 ? 0 : n+1);
+            String packageName = n==-1 ? "" : entry.substring( 0, n).replace('/', '.');
+            added &= addFile( res, limit, fileInfo, className, packageName );
+          
+          } else if( entry.startsWith(query.replace( '.', '/' )) ) {
+            // package name
+            added &= addFile( res, limit, fileInfo, null, query );
+          
+          }
         }
       }
     }
-    return res;
+    return added;
+  }
+
+  private boolean addClass(Map res, int limit, FileInfo fileInfo, String classEntry, String query) {
+    int n = classEntry.lastIndexOf('/');
+    String className = classEntry.substring(n + 1);
+    String packageName = n == -1 ? "" : classEntry.substring(0, n).replace('/', '.');
+    if(query.indexOf('.') == -1 || query.indexOf('*') > -1
+        || query.equalsIgnoreCase(packageName + "." + className)) {
+      return addFile(res, limit, fileInfo, className, packageName);
+    }
+    // package name
+    return addFile(res, limit, fileInfo, null, query);
+  }
+
+  /**
+   * Returns artifact document for given jar key
+   */
+  private FileInfo getFileInfo(IndexReader reader, String jarKey) throws IOException {
+    TermDocs docs = reader.termDocs(new Term(JAR_KEY, jarKey));
+    try {
+      while(docs.next()) {
+        Document doc = reader.document(docs.doc());
+        if(doc.get(JAR_NAME) != null) {
+          return FileInfo.getFileInfo(doc);
+        }
+      }
+      return null;
+    } finally {
+      docs.close();
+    }
   }
 
-  private void addFile( TreeMap res, FileInfo fileInfo, String className, String packageName ) {
+  private boolean addFile( Map res, int limit, FileInfo fileInfo, String className, String packageName ) {
     // String key = group + " : "+artifact + " : " + className+" : "+packageName;
     String key = className + " : "+packageName + " : " + fileInfo.group + " : "+fileInfo.artifact;
     ArtifactInfo info = ( ArtifactInfo) res.get(key);
     if(info==null) {
+      if(res.size() >= limit) {
+        return false;
+      }
       info = new ArtifactInfo(fileInfo.group, fileInfo.artifact, packageName, className);
       res.put(key, info);
     }
     info.addFile(fileInfo);
+    return true;
   }
   
   
@@ -194,6 +451,7 @@ public class Indexer {
     }
     
     Indexer indexer = new Indexer();
+    indexer.setThreads(Integer.getInteger("indexer.threads", Runtime.getRuntime().availableProcessors()).intValue());
     String command = args[ 0];
     if( "index".equals( command)) {
       String repositoryName = args[ 1];  
@@ -217,6 +475,9 @@ public class Indexer {
       System.err.println("Total files: "+indexer.totalFiles);
       System.err.println("Total classes: "+indexer.totalClasses);
       System.err.println("Total size: "+indexer.totalSize);
+      for(Iterator it = indexer.getErrors().iterator(); it.hasNext();) {
+        System.err.println("Unable to read " + it.next());
+      }
       
     } else if( "search".equals( command)) {
       String query = args[ 1];
@@ -249,19 +510,52 @@ public class Indexer {
 
   public void reindex(String indexPath, String repositoryPath, String repositoryName, IProgressMonitor monitor)
       throws IOException {
+    reindex(indexPath, repositoryPath, repositoryName, false, monitor);
+  }
+
+  /**
+   * Reindex given repository.
+   * 
+   * @param incremental when <code>true</code> and index already exist, only new and changed jars are read, 
+   *    documents for removed files are deleted and unchanged jars (same size and date) are skipped.
+   *    Index created by older versions without the format document is recreated from scratch. 
+   */
+  public void reindex(String indexPath, String repositoryPath, String repositoryName, boolean incremental,
+      IProgressMonitor monitor) throws IOException {
     monitor.beginTask("Indexing " + repositoryName, IProgressMonitor.UNKNOWN);
     IndexWriter w = null;
     try {
-      w = new IndexWriter(indexPath, new StandardAnalyzer(), true);
-      processDir(new File(repositoryPath), w, repositoryPath, repositoryName, monitor);
+      indexState = incremental ? IndexState.read(indexPath) : null;
 
-      w.optimize();
+      w = new IndexWriter(indexPath, new StandardAnalyzer(), indexState==null);
+      if(threads > 1) {
+        new ParallelIndexer(w, repositoryPath, repositoryName).run(new File(repositoryPath), threads, monitor);
+      } else {
+        processDir(new File(repositoryPath), w, repositoryPath, repositoryName, monitor);
+      }
+
+      if(indexState == null) {
+        Document doc = new Document();
+        doc.add(new Field(INDEX_FORMAT, FORMAT_VERSION, Field.Store.YES, Field.Index.UN_TOKENIZED));
+        w.addDocument(doc);
+        w.optimize();
+      } else if(!monitor.isCanceled()) {
+        // files that weren't seen during the walk had been removed from repository
+        for(Iterator it = indexState.getRemaining().iterator(); it.hasNext();) {
+          w.deleteDocuments(new Term(JAR_KEY, (String) it.next()));
+          indexState.changes++;
+        }
+        if(indexState.changes > 0) {
+          w.optimize();
+        }
+      }
       monitor.worked(1);
 
     } catch(IOException ex) {
       throw ex;
 
     } finally {
+      indexState = null;
       if(w!=null) {
         try {
           w.close();
@@ -293,7 +587,8 @@ public class Indexer {
           // processDir(f, w, repositoryPath, repositoryName, new SubProgressMonitor(monitor, 1) );
           processDir(f, w, repositoryPath, repositoryName, monitor );
         } else if(f.isFile()) {
-          processFile(f, w, repositoryPath, repositoryName, monitor);
+          if(monitor.isCanceled()) return;
+          processFile(f, w, repositoryPath, repositoryName);
         }
       }
     } finally {
@@ -301,28 +596,45 @@ public class Indexer {
     }
   }
 
-  private void processFile( File f, IndexWriter w, String repositoryPath, String repositoryName, IProgressMonitor monitor) throws IOException {
-    if(monitor.isCanceled()) return;
-
-    totalFiles++;
+  private void processFile( File f, IndexWriter w, String repositoryPath, String repositoryName) throws IOException {
+    synchronized(this) {
+      totalFiles++;
+    }
 
     String name = f.getName();
 
     String absolutePath = f.getAbsolutePath();
     String jarName = absolutePath.substring(repositoryPath.length()).replace( '\\', '/');
     
-//    FileInfo fileInfo = w.get(jarName);
-//    if(fileInfo != null) {
-//      return; // TODO compare date and size
-//    }
-
     long size;
+    String sha1 = null;
     String names = null;
     
     if(name.endsWith( ".jar" )) {
       size = f.length();
-      names = readNames(f);
-      totalSize += size;
+      if(!isChanged(w, jarName, size, f.lastModified())) {
+        return;
+      }
+      // still index the jar, so it can be found by name or checksum
+      IOException error = null;
+      try {
+        sha1 = getSha1(f);
+      } catch(IOException ex) {
+        error = ex;
+      }
+      try {
+        names = readNames(f);
+      } catch(IOException ex) {
+        error = ex;
+      }
+      if(error != null) {
+        synchronized(this) {
+          errors.add(absolutePath + "; " + error.getMessage());
+        }
+      }
+      synchronized(this) {
+        totalSize += size;
+      }
       
     } else if(name.endsWith( ".pom" )) {
       File jarFile = new File( f.getParent(), name.substring( 0, name.length() - 4) + ".jar");
@@ -330,12 +642,18 @@ public class Indexer {
         return;
       }      
       size = 0;
+      if(!isChanged(w, jarName, size, f.lastModified())) {
+        return;
+      }
 
     } else {
       return;
     }
     
-    w.addDocument(getDocument(repositoryName, jarName, size, f.lastModified(), names));
+    List documents = getDocuments(repositoryName, jarName, size, f.lastModified(), sha1, names);
+    for(Iterator it = documents.iterator(); it.hasNext();) {
+      w.addDocument((Document) it.next());
+    }
     
 //      if(( totalFiles % 100)==0) {
 //        System.err.println( "Indexing "+totalFiles+" "+f.getParentFile().getAbsolutePath().substring( repositoryPath.length()));
@@ -344,11 +662,176 @@ public class Indexer {
     // monitor.worked( 1 );
   }
 
+  /**
+   * Returns false if incremental reindex found document with the same size and date. Otherwise stale document is
+   * deleted and true is returned.
+   */
+  private boolean isChanged(IndexWriter w, String jarName, long size, long date) throws IOException {
+    if(indexState == null) {
+      return true;
+    }
+    String key = getJarKey(jarName);
+    int state = indexState.check(key, size, date);
+    if(state == IndexState.UNCHANGED) {
+      return false;
+    }
+    if(state == IndexState.CHANGED) {
+      w.deleteDocuments(new Term(JAR_KEY, key));
+    }
+    return true;
+  }
+
+  private static String getJarKey(String name) {
+    return name.charAt(0)=='/' ? name.substring(1) : name;
+  }
+
+  /**
+   * Walks the repository on a pool of worker threads. Each worker takes a folder from the shared queue,
+   * forks its subfolders back into the queue and reads jars from that folder, feeding documents into
+   * the shared <code>IndexWriter</code>. Progress monitor is only touched from the calling thread.
+   */
+  private class ParallelIndexer {
+    private final IndexWriter w;
+    private final String repositoryPath;
+    private final String repositoryName;
+
+    private final LinkedList queue = new LinkedList();
+    /** number of queued and currently processed folders */
+    private int pending = 0;
+    private int processed = 0;
+    private boolean canceled = false;
+    private IOException error;
+    private File currentDir;
+
+    ParallelIndexer(IndexWriter w, String repositoryPath, String repositoryName) {
+      this.w = w;
+      this.repositoryPath = repositoryPath;
+      this.repositoryName = repositoryName;
+    }
+
+    public void run(File root, int threads, IProgressMonitor monitor) throws IOException {
+      if(root==null || !root.exists()) return;
+
+      synchronized(this) {
+        queue.add(root);
+        pending = 1;
+      }
+
+      Thread[] workers = new Thread[threads];
+      for(int i = 0; i < workers.length; i++ ) {
+        workers[i] = new Thread("Indexing " + repositoryName + " #" + i) {
+          public void run() {
+            processQueue();
+          }
+        };
+        workers[i].setDaemon(true);
+        workers[i].start();
+      }
+
+      try {
+        synchronized(this) {
+          int reported = 0;
+          while(pending > 0 && error == null) {
+            if(monitor.isCanceled()) {
+              break;
+            }
+            try {
+              wait(500L);
+            } catch(InterruptedException ex) {
+              break;
+            }
+            if(currentDir != null) {
+              monitor.subTask(currentDir.getAbsolutePath());
+              currentDir = null;
+            }
+            if(processed > reported) {
+              monitor.worked(processed - reported);
+              reported = processed;
+            }
+          }
+          canceled = true;
+          notifyAll();
+        }
+
+      } finally {
+        for(int i = 0; i < workers.length; i++ ) {
+          try {
+            workers[i].join();
+          } catch(InterruptedException ex) {
+            // ignore
+          }
+        }
+      }
+
+      if(error != null) {
+        throw error;
+      }
+    }
+
+    void processQueue() {
+      File dir;
+      while((dir = nextDir()) != null) {
+        LinkedList dirs = new LinkedList();
+        try {
+          File[] files = dir.listFiles();
+          if(files != null) {
+            for(int i = 0; i < files.length && !isCanceled(); i++ ) {
+              File f = files[i];
+              if(f.isDirectory()) {
+                dirs.add(f);
+              } else if(f.isFile()) {
+                processFile(f, w, repositoryPath, repositoryName);
+              }
+            }
+          }
+        } catch(IOException ex) {
+          setError(ex);
+        } finally {
+          dirDone(dir, dirs);
+        }
+      }
+    }
+
+    private synchronized File nextDir() {
+      while(queue.isEmpty() && pending > 0 && !canceled && error == null) {
+        try {
+          wait();
+        } catch(InterruptedException ex) {
+          return null;
+        }
+      }
+      if(canceled || error != null || queue.isEmpty()) {
+        return null;
+      }
+      // depth first keeps the queue short on deep repository trees
+      return (File) queue.removeLast();
+    }
+
+    private synchronized void dirDone(File dir, LinkedList dirs) {
+      queue.addAll(dirs);
+      pending += dirs.size() - 1;
+      processed++;
+      currentDir = dir;
+      notifyAll();
+    }
+
+    private synchronized boolean isCanceled() {
+      return canceled || error != null;
+    }
+
+    private synchronized void setError(IOException ex) {
+      if(error == null) {
+        error = ex;
+      }
+      notifyAll();
+    }
+  }
+
   public void addDocument(String repository, String name, long size, long date, String names, String indexPath) throws IOException {
     IndexWriter m = null;
     try {
       m = new IndexWriter(indexPath, new StandardAnalyzer(), false);
-      m.addDocument(getDocument(repository, name, size, date, names));
+      addDocuments(m, getDocuments(repository, name, size, date, null, names));
       m.optimize();
     } finally {
       if(m != null) {
@@ -361,61 +844,255 @@ public class Indexer {
     }
   }
   
-  public static Document getDocument( String repository, String name, long size, long date, String names) {
-    if(name.charAt(0)=='/') {
-      name = name.substring(1);
+  /**
+   * Adds or replaces given documents using single <code>IndexWriter</code>. Index is not optimized.
+   * 
+   * @param documents artifact documents, each followed by its class documents 
+   * @see #getDocuments(String, String, long, long, String, String)
+   */
+  public void updateDocuments(List documents, String indexPath) throws IOException {
+    IndexWriter w = null;
+    try {
+      w = new IndexWriter(indexPath, new StandardAnalyzer(), false);
+      addDocuments(w, documents);
+    } finally {
+      if(w != null) {
+        try {
+          w.close();
+        } catch(IOException ex) {
+          // ignore
+        }
+      }
+    }
+  }
+  
+  /**
+   * Previous documents for the same jar are deleted before adding artifact document. 
+   */
+  private static void addDocuments(IndexWriter w, List documents) throws IOException {
+    for(Iterator it = documents.iterator(); it.hasNext();) {
+      Document doc = (Document) it.next();
+      if(doc.get(JAR_NAME) != null) {
+        w.deleteDocuments(new Term(JAR_KEY, doc.get(JAR_KEY)));
+      }
+      w.addDocument(doc);
+    }
+  }
+
+  /**
+   * Returns artifact document followed by the documents for each class from the <code>names</code>.
+   * Class documents are linked to the artifact document by {@link #JAR_KEY}.
+   * 
+   * @param sha1 jar checksum, as returned by {@link #getSha1(File)} or <code>null</code>
+   * @param names newline separated class names, as returned by {@link #readNames(File)}
+   */
+  public static List getDocuments(String repository, String name, long size, long date, String sha1, String names) {
+    List documents = new ArrayList();
+    documents.add(getDocument(repository, name, size, date, sha1));
+    
+    if(names != null) {
+      String key = getJarKey(name);
+      String[] entries = names.split("\n");
+      for(int i = 0; i < entries.length; i++ ) {
+        String entry = entries[i];
+        if(entry.length() > 0) {
+          documents.add(getClassDocument(key, entry));
+        }
+      }
     }
+    return documents;
+  }
+
+  public static Document getDocument( String repository, String name, long size, long date, String sha1) {
+    name = getJarKey(name);
     
     Document doc = new Document();
     doc.add( new Field( REPOSITORY, repository, Field.Store.YES, Field.Index.NO));
     doc.add( new Field( JAR_NAME, name, Field.Store.YES, Field.Index.TOKENIZED));
+    doc.add( new Field( JAR_KEY, name, Field.Store.YES, Field.Index.UN_TOKENIZED));
     doc.add( new Field( JAR_DATE, DateTools.timeToString( date, DateTools.Resolution.MINUTE), Field.Store.YES, Field.Index.NO));
     doc.add( new Field( JAR_SIZE, Long.toString(size), Field.Store.YES, Field.Index.NO));
-    
-    if(names!=null) {
-      doc.add( new Field( NAMES, names, Field.Store.COMPRESS, Field.Index.TOKENIZED));
+    if(sha1 != null) {
+      doc.add( new Field( SHA1, sha1, Field.Store.YES, Field.Index.UN_TOKENIZED));
     }
-    // TODO calculate jar's sha1 or md5
     return doc;
   }
 
-  public String readNames(File jarFile) {
-    ZipFile jar = null;
+  private static Document getClassDocument(String jarKey, String classEntry) {
+    int n = classEntry.lastIndexOf('/');
+    String className = classEntry.substring(n + 1).toLowerCase();
+    String packageName = n == -1 ? "" : classEntry.substring(0, n).replace('/', '.').toLowerCase();
+
+    Document doc = new Document();
+    doc.add(new Field(JAR_KEY, jarKey, Field.Store.YES, Field.Index.UN_TOKENIZED));
+    doc.add(new Field(CLASS_ENTRY, classEntry, Field.Store.YES, Field.Index.NO));
+    doc.add(new Field(CLASS_NAME, className, Field.Store.NO, Field.Index.UN_TOKENIZED));
+    doc.add(new Field(CLASS_QNAME, packageName.length() == 0 ? className : packageName + "." + className,
+        Field.Store.NO, Field.Index.UN_TOKENIZED));
+    doc.add(new Field(PACKAGE_NAME, packageName, Field.Store.NO, Field.Index.UN_TOKENIZED));
+    return doc;
+  }
+
+  /**
+   * Returns newline separated names of the classes from given jar
+   * 
+   * @throws java.util.zip.ZipException if jar is corrupted 
+   */
+  public String readNames(File jarFile) throws IOException {
+    List classNames = JarScanner.readClassNames(jarFile);
+
+    StringBuffer sb = new StringBuffer();
+    for(Iterator it = classNames.iterator(); it.hasNext();) {
+      String name = (String) it.next();
+      // TODO verify if class is public or protected
+      // TODO skipp all inner classes for now
+      int i = name.lastIndexOf( "$");
+      if( i==-1) {
+        sb.append(name).append( "\n");
+      }
+    }
+    synchronized(this) {
+      totalClasses += classNames.size();
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns hex encoded SHA-1 checksum of the given file
+   */
+  public static String getSha1(File file) throws IOException {
+    InputStream is = new FileInputStream(file);
     try {
-      jar = new ZipFile( jarFile);
-      
-      StringBuffer sb = new StringBuffer();
-      for( Enumeration en = jar.entries(); en.hasMoreElements();) {
-        ZipEntry e = ( ZipEntry) en.nextElement();
-        String name = e.getName();
-        if( name.endsWith( ".class")) {
-          totalClasses++;
-          // TODO verify if class is public or protected
-          // TODO skipp all inner classes for now
-          int i = name.lastIndexOf( "$");
-          if( i==-1) {
-            sb.append( name.substring( 0, name.length() - 6)).append( "\n");
+      return getSha1(is);
+    } finally {
+      try {
+        is.close();
+      } catch(IOException ex) {
+        // ignore
+      }
+    }
+  }
+
+  /**
+   * Returns hex encoded SHA-1 checksum of the stream content. Stream is not closed.
+   */
+  public static String getSha1(InputStream is) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch(NoSuchAlgorithmException ex) {
+      throw new IOException(ex.getMessage());
+    }
+
+    byte[] buf = new byte[8192];
+    int n;
+    while((n = is.read(buf)) > -1) {
+      digest.update(buf, 0, n);
+    }
+
+    byte[] bytes = digest.digest();
+    StringBuffer sb = new StringBuffer(bytes.length * 2);
+    for(int i = 0; i < bytes.length; i++ ) {
+      int b = bytes[i] & 0xFF;
+      sb.append(HEX_DIGITS[b >> 4]).append(HEX_DIGITS[b & 0xF]);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Returns jars with given SHA-1 checksum, e.g. to find groupId, artifactId and version of an unknown jar
+   * 
+   * @return list of {@link FileInfo}
+   */
+  public List searchBySha1(IndexSearcher searcher, String sha1) throws IOException {
+    List res = new ArrayList();
+    Hits hits = searcher.search(new TermQuery(new Term(SHA1, sha1.toLowerCase())));
+    for(int i = 0; i < hits.length(); i++ ) {
+      FileInfo fileInfo = FileInfo.getFileInfo(hits.doc(i));
+      if(fileInfo != null) {
+        res.add(fileInfo);
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Returns errors for the jars that could not be read during reindex
+   */
+  public synchronized List getErrors() {
+    return new ArrayList(errors);
+  }
+
+  
+  /**
+   * Date and size of the documents from the existing index. Entries are removed when corresponding 
+   * file is seen, so after the repository walk only removed files remain.
+   */
+  private static class IndexState {
+    static final int NEW = 0;
+    static final int CHANGED = 1;
+    static final int UNCHANGED = 2;
+
+    private static final FieldSelector SELECTOR = new MapFieldSelector(new String[] {JAR_NAME, JAR_SIZE, JAR_DATE});
+
+    /** jar key -> String[] {size, date} */
+    private final Map entries = new HashMap();
+    int changes = 0;
+
+    /**
+     * Returns <code>null</code> if there is no index or it need to be recreated. 
+     */
+    static IndexState read(String indexPath) {
+      if(!IndexReader.indexExists(indexPath)) {
+        return null;
+      }
+      IndexReader r = null;
+      try {
+        r = IndexReader.open(indexPath);
+        if(r.docFreq(new Term(INDEX_FORMAT, FORMAT_VERSION)) == 0) {
+          // created before per-class documents or jar checksums
+          return null;
+        }
+        IndexState state = new IndexState();
+        int n = r.maxDoc();
+        for(int i = 0; i < n; i++ ) {
+          if(!r.isDeleted(i)) {
+            Document doc = r.document(i, SELECTOR);
+            String jarName = doc.get(JAR_NAME);
+            if(jarName != null) {
+              state.entries.put(getJarKey(jarName), new String[] {doc.get(JAR_SIZE), doc.get(JAR_DATE)});
+            }
           }
         }
-      }
-      return sb.toString();
-      
-    } catch( Exception e) {
-      // System.err.println( "Error for file "+jarFile.getAbsolutePath());
-      // System.err.println( "  "+e.getMessage());
-      return null;
-      
-    } finally {
-      if(jar!=null) {
-        try {
-          jar.close();
-        } catch( Exception e) {
+        return state;
+      } catch(IOException ex) {
+        return null;
+      } finally {
+        if(r != null) {
+          try {
+            r.close();
+          } catch(IOException ex) {
+            // ignore
+          }
         }
       }
     }
+
+    synchronized int check(String key, long size, long date) {
+      String[] entry = (String[]) entries.remove(key);
+      if(entry != null && Long.toString(size).equals(entry[0])
+          && DateTools.timeToString(date, DateTools.Resolution.MINUTE).equals(entry[1])) {
+        return UNCHANGED;
+      }
+      changes++;
+      return entry == null ? NEW : CHANGED;
+    }
+
+    synchronized Set getRemaining() {
+      return entries.keySet();
+    }
   }
 
-  
   public static final FileInfoComparator FILE_INFO_COMPARATOR = new FileInfoComparator();
   public static class FileInfoComparator implements Comparator {
 
@@ -426,6 +1103,21 @@ public class Indexer {
     }
   }
   
+  /**
+   * Bounded search result
+   */
+  public static class SearchResult {
+    /** ArtifactInfo ordered by relevance */
+    public final Map artifacts;
+    /** number of matched documents that are not included into artifacts */
+    public final int moreResults;
+
+    public SearchResult(Map artifacts, int moreResults) {
+      this.artifacts = artifacts;
+      this.moreResults = moreResults;
+    }
+  }
+
   public static class ArtifactInfo {
     public final String group;
     public final String artifact;
@@ -464,8 +1156,9 @@ public class Indexer {
     public final String version;
     public final long size;
     public final Date date;
+    public final String sha1;
 
-    private FileInfo( String repository, String group, String artifact, String version, String name, long size, Date date ) {
+    private FileInfo( String repository, String group, String artifact, String version, String name, long size, Date date, String sha1 ) {
       this.repository = repository;
       this.group = group;
       this.artifact = artifact;
@@ -473,6 +1166,7 @@ public class Indexer {
       this.name = name;
       this.size = size;
       this.date = date;
+      this.sha1 = sha1;
     }
 
     public Dependency getDependency() {
@@ -517,7 +1211,7 @@ public class Indexer {
         return null;
       }
       
-      return new FileInfo(repository, group, artifact, version, name, size, date);
+      return new FileInfo(repository, group, artifact, version, name, size, date, doc.get(SHA1));
     }
   }
 
@@ -22,13 +22,15 @@ package org.maven.ide.eclipse.index;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Set;
+import java.util.Iterator;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.preference.IPreferenceStore;
 import org.maven.ide.eclipse.Maven2Plugin;
+import org.maven.ide.eclipse.preferences.Maven2PreferenceConstants;
 
 
 /**
@@ -38,21 +40,30 @@ import org.maven.ide.eclipse.Maven2Plugin;
  */
 class IndexerJob extends Job {
   private final String repositoryName;
-  private final Set indexes;
+  private final MavenRepositoryIndexManager indexManager;
   private final File indexDir;
+  private final IPreferenceStore preferenceStore;
 
   private File repositoryDir;
+  private boolean incremental = true;
 
-  public IndexerJob(String repositoryName, Set indexes, File indexDir) {
+  public IndexerJob(String repositoryName, MavenRepositoryIndexManager indexManager, File indexDir,
+      IPreferenceStore preferenceStore) {
     super("Indexing " + repositoryName);
     this.repositoryName = repositoryName;
-    this.indexes = indexes;
+    this.indexManager = indexManager;
     this.indexDir = indexDir;
+    this.preferenceStore = preferenceStore;
     
     setPriority(Job.LONG);
   }
 
-  public void reindex(File repositoryDir, long delay) {
+  /**
+   * @param incremental if false, index is recreated from scratch. Pending full reindex request 
+   *    is not downgraded by the incremental one.
+   */
+  public synchronized void reindex(File repositoryDir, boolean incremental, long delay) {
+    this.incremental = this.repositoryDir == null ? incremental : this.incremental && incremental;
     this.repositoryDir = repositoryDir;
     
     if(getState()==Job.NONE) {
@@ -62,9 +73,17 @@ class IndexerJob extends Job {
 
   protected IStatus run(IProgressMonitor monitor) {
     IStatus status = Status.OK_STATUS;
-    while(repositoryDir!=null) {
-      String repositoryPath = repositoryDir.getAbsolutePath();
-      repositoryDir = null;
+    while(true) {
+      String repositoryPath;
+      boolean incremental;
+      synchronized(this) {
+        if(repositoryDir == null) {
+          break;
+        }
+        repositoryPath = repositoryDir.getAbsolutePath();
+        incremental = this.incremental;
+        repositoryDir = null;
+      }
       try {
         File file = new File(indexDir, repositoryName);
         if(!file.exists()) {
@@ -72,8 +91,13 @@ class IndexerJob extends Job {
         }
   
         Indexer indexer = new Indexer();
-        indexer.reindex(file.getAbsolutePath(), repositoryPath, repositoryName, monitor);
-        indexes.add(repositoryName);
+        indexer.setThreads(preferenceStore.getInt(Maven2PreferenceConstants.P_INDEXER_THREADS));
+        indexer.reindex(file.getAbsolutePath(), repositoryPath, repositoryName, incremental, monitor);
+        indexManager.indexChanged(repositoryName);
+
+        for(Iterator it = indexer.getErrors().iterator(); it.hasNext();) {
+          indexManager.console.logError("Unable to read " + it.next());
+        }
   
       } catch(IOException ex) {
         status = new Status(IStatus.ERROR, Maven2Plugin.PLUGIN_ID, -1, "Indexing error", ex);
@@ -21,15 +21,16 @@ package org.maven.ide.eclipse.index;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.lucene.index.IndexReader;
 
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.Job;
-import org.maven.ide.eclipse.Maven2Plugin;
+import org.eclipse.jface.preference.IPreferenceStore;
 import org.maven.ide.eclipse.embedder.MavenEmbedderManager;
 import org.maven.ide.eclipse.launch.console.Maven2Console;
 import org.osgi.framework.Bundle;
@@ -45,7 +46,8 @@ public class MavenRepositoryIndexManager {
 
   private static final String[] DEFAULT_INDEXES = {"central"}; //$NON-NLS-1$
 
-  private Set indexes = Collections.synchronizedSet(new HashSet());
+  /** index name -> index folder */
+  private final Map indexes = new LinkedHashMap();
 
   public final Maven2Console console;
 
@@ -53,18 +55,38 @@ public class MavenRepositoryIndexManager {
 
   private final IPath stateLocation;
 
+  private final IPreferenceStore preferenceStore;
+
   private IndexerJob localIndexer;
 
-  public MavenRepositoryIndexManager(MavenEmbedderManager embedderManager, Maven2Console console, IPath stateLocation) {
+  private IndexUpdaterJob localUpdater;
+
+  /** shared searcher over all indexes, reopened after index is changed */
+  private SharedIndexSearcher searcher;
+
+  /** prevents indexer and updater jobs from writing into local index at the same time */
+  private final ISchedulingRule localIndexRule = new ISchedulingRule() {
+      public boolean contains(ISchedulingRule rule) {
+        return rule == this;
+      }
+
+      public boolean isConflicting(ISchedulingRule rule) {
+        return rule == this;
+      }
+    };
+
+  public MavenRepositoryIndexManager(MavenEmbedderManager embedderManager, Maven2Console console, IPath stateLocation,
+      IPreferenceStore preferenceStore) {
     this.embedderManager = embedderManager;
     this.console = console;
     this.stateLocation = stateLocation;
+    this.preferenceStore = preferenceStore;
   }
 
   public void initialize(Bundle pluginBundle) {
     File indexDir = getIndexDir();
 
-    UnpackerJob unpackerJob = new UnpackerJob(pluginBundle, indexDir, DEFAULT_INDEXES, indexes);
+    UnpackerJob unpackerJob = new UnpackerJob(pluginBundle, indexDir, DEFAULT_INDEXES, this);
     unpackerJob.schedule(2000L);
 
     File localRepositoryIndexDir = new File(indexDir, LOCAL_INDEX);
@@ -72,9 +94,11 @@ public class MavenRepositoryIndexManager {
       IndexReader reader = null;
       try {
         reader = IndexReader.open(localRepositoryIndexDir);
-        indexes.add(LOCAL_INDEX);
+        addIndex(LOCAL_INDEX, localRepositoryIndexDir);
+        // pick up artifacts installed outside of the workspace, unchanged jars are skipped
+        reindexLocal(true, 5000L);
       } catch(Exception ex) {
-        reindexLocal(5000L);
+        reindexLocal(false, 5000L);
       } finally {
         try {
           if(reader != null) {
@@ -86,47 +110,122 @@ public class MavenRepositoryIndexManager {
       }
 
     } else {
-      reindexLocal(5000L);
+      reindexLocal(false, 5000L);
     }
   }
 
-  public File[] getIndexes() {
-    String[] indexNames = getIndexNames();
-
-    File[] indexes = new File[indexNames.length];
-    for(int i = 0; i < indexes.length; i++ ) {
-      indexes[i] = new File(getIndexDir(), indexNames[i]);
-    }
-
-    return indexes;
+  public synchronized File[] getIndexes() {
+    return (File[]) indexes.values().toArray(new File[indexes.size()]);
   }
 
+  /**
+   * Incrementally update local repository index, only new and changed jars are indexed
+   */
   public void reindexLocal(long delay) {
+    reindexLocal(true, delay);
+  }
+
+  public void reindexLocal(boolean incremental, long delay) {
     if(localIndexer == null || localIndexer.getState() == Job.NONE) {
-      localIndexer = new IndexerJob(LOCAL_INDEX, indexes, getIndexDir());
+      localIndexer = new IndexerJob(LOCAL_INDEX, this, getIndexDir(), preferenceStore);
+      localIndexer.setRule(localIndexRule);
     }
-    localIndexer.reindex(embedderManager.getLocalRepositoryDir(), delay);
+    localIndexer.reindex(embedderManager.getLocalRepositoryDir(), incremental, delay);
   }
 
+  /**
+   * Queue downloaded file for adding to the local index. Queued files are added in background. 
+   */
   public synchronized void updateIndex(File localFile, String repository, String name, long size, long date) {
-    String indexPath = new File(getIndexDir(), LOCAL_INDEX).getAbsolutePath();
+    if(localUpdater == null) {
+      localUpdater = new IndexUpdaterJob(LOCAL_INDEX, new File(getIndexDir(), LOCAL_INDEX), this);
+      localUpdater.setRule(localIndexRule);
+    }
+    localUpdater.addFile(localFile, repository, name, size, date);
+  }
+
+  /**
+   * Search all available indexes using shared searcher. At most <code>limit</code> artifacts are returned.
+   * Results are cached until index is changed, refined queries are computed from the cached results.
+   */
+  public Indexer.SearchResult search(String query, String field, int limit) throws IOException {
+    SharedIndexSearcher s = acquireSearcher();
     try {
-      Indexer indexer = new Indexer();
-      indexer.addDocument(repository, name, size, date, indexer.readNames(localFile), indexPath);
-    } catch(IOException ex) {
-      String msg = "Unable to index " + name;
-      console.logError(msg + "; " + ex.getMessage());
-      Maven2Plugin.log(msg, ex);
+      SearchResultCache cache = s.getCache();
+      Indexer.SearchResult result = cache.get(query, field, limit);
+      if(result == null) {
+        result = new Indexer().search(s.getSearcher(), query, field, limit);
+        cache.put(query, field, limit, result);
+      }
+      return result;
+    } finally {
+      s.release();
     }
   }
 
-  private File getIndexDir() {
-    return new File(stateLocation.toFile(), "index");
+  /**
+   * Returns jars with given SHA-1 checksum from all available indexes
+   * 
+   * @return list of {@link Indexer.FileInfo}
+   */
+  public List searchBySha1(String sha1) throws IOException {
+    SharedIndexSearcher s = acquireSearcher();
+    try {
+      return new Indexer().searchBySha1(s.getSearcher(), sha1);
+    } finally {
+      s.release();
+    }
+  }
+
+  private synchronized SharedIndexSearcher acquireSearcher() throws IOException {
+    if(searcher == null) {
+      searcher = new SharedIndexSearcher(getIndexes());
+    }
+    searcher.acquire();
+    return searcher;
+  }
+
+  /**
+   * Called by the index jobs when index is added or its content is changed. 
+   * Searcher and cached search results are dropped and searcher is reopened on the next search.
+   */
+  public synchronized void indexChanged(String indexName) {
+    File indexDir = (File) indexes.get(indexName);
+    indexChanged(indexName, indexDir == null ? new File(getIndexDir(), indexName) : indexDir);
+  }
+
+  /**
+   * Called when index content has been written into a new folder.
+   */
+  synchronized void indexChanged(String indexName, File indexDir) {
+    indexes.put(indexName, indexDir);
+    if(searcher != null) {
+      searcher.release();
+      searcher = null;
+    }
   }
 
-  // TODO implement index registry
-  private String[] getIndexNames() {
-    return (String[]) indexes.toArray(new String[indexes.size()]);
+  /**
+   * Releases shared searcher, so index readers are closed once running searches are completed.
+   */
+  public synchronized void shutdown() {
+    if(searcher != null) {
+      searcher.release();
+      searcher = null;
+    }
+  }
+
+  /**
+   * Registers existing index. Searcher is only reopened if index has not been registered with the same folder.
+   */
+  synchronized void addIndex(String indexName, File indexDir) {
+    if(!indexDir.equals(indexes.get(indexName))) {
+      indexChanged(indexName, indexDir);
+    }
+  }
+
+  private File getIndexDir() {
+    return new File(stateLocation.toFile(), "index");
   }
 
 }
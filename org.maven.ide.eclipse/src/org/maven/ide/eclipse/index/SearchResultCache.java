@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.maven.ide.eclipse.index;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.Token;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.maven.ide.eclipse.index.Indexer.ArtifactInfo;
+import org.maven.ide.eclipse.index.Indexer.FileInfo;
+import org.maven.ide.eclipse.index.Indexer.SearchResult;
+
+
+/**
+ * LRU cache of the search results for one index generation. When query is a refinement of the cached 
+ * query, e.g. "commons-lo" after "commons-l", result is computed by filtering the cached result.
+ */
+public class SearchResultCache {
+  private static final int MAX_SIZE = 50;
+
+  private final Analyzer analyzer = new StandardAnalyzer();
+
+  private final Map results = new LinkedHashMap(16, 0.75f, true) {
+    protected boolean removeEldestEntry(Map.Entry eldest) {
+      return size() > MAX_SIZE;
+    }
+  };
+
+  /**
+   * Returns cached result or result filtered from a cached broader query. Returns <code>null</code> 
+   * when query have to be run against the index.
+   */
+  public synchronized SearchResult get(String query, String field, int limit) {
+    CachedResult cached = (CachedResult) results.get(getKey(query, field));
+    if(cached != null && (cached.limit == limit || isComplete(cached, limit))) {
+      return cached.result;
+    }
+
+    String term = getTerm(query, field);
+    int start = getLastTermStart(query, field);
+    if(start == -1) {
+      return null;
+    }
+    for(int len = term.length() - 1; len > start; len-- ) {
+      cached = (CachedResult) results.get(getKey(getBroaderQuery(term, field, len), field));
+      if(cached != null && isComplete(cached, limit)) {
+        SearchResult result = filter(cached.result, query, field);
+        put(query, field, limit, result);
+        return result;
+      }
+    }
+    return null;
+  }
+
+  public synchronized void put(String query, String field, int limit, SearchResult result) {
+    results.put(getKey(query, field), new CachedResult(result, limit));
+  }
+
+  private static boolean isComplete(CachedResult cached, int limit) {
+    return cached.result.moreResults == 0 && cached.result.artifacts.size() <= limit;
+  }
+
+  private static String getKey(String query, String field) {
+    return field + ":" + query;
+  }
+
+  /**
+   * Returns the prefix or class name term of the query that can be refined
+   */
+  private static String getTerm(String query, String field) {
+    return Indexer.NAMES.equals(field) && query.endsWith("*") ? query.substring(0, query.length() - 1) : query;
+  }
+
+  /**
+   * Returns position of the last term in the query, which is matched as a prefix, or -1 if query can't be 
+   * computed from a broader query. Preceding terms of the jar name phrase are matched exactly.
+   */
+  private static int getLastTermStart(String query, String field) {
+    if(Indexer.JAR_NAME.equals(field)) {
+      int n = query.length() - 1;
+      if(query.indexOf('*') > -1 || n == -1 || Indexer.QUERY_SEPARATORS.indexOf(query.charAt(n)) > -1) {
+        return -1;
+      }
+      while(n > 0 && Indexer.QUERY_SEPARATORS.indexOf(query.charAt(n - 1)) == -1) {
+        n--;
+      }
+      return n;
+
+    } else if(Indexer.NAMES.equals(field)) {
+      // class name prefix
+      String term = getTerm(query, field);
+      if(term.length() == query.length() || term.indexOf('*') > -1 || term.indexOf('.') > -1) {
+        return -1;
+      }
+      return 0;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns query using first <code>len</code> characters of the term, which matches the superset of 
+   * results of the given query.
+   */
+  private static String getBroaderQuery(String term, String field, int len) {
+    return Indexer.NAMES.equals(field) ? term.substring(0, len) + "*" : term.substring(0, len);
+  }
+
+  private SearchResult filter(SearchResult result, String query, String field) {
+    String term = getTerm(query, field).toLowerCase();
+    String[] terms = Indexer.getQueryTerms(term);
+
+    Map artifacts = new LinkedHashMap();
+    for(Iterator it = result.artifacts.entrySet().iterator(); it.hasNext();) {
+      Map.Entry e = (Map.Entry) it.next();
+      ArtifactInfo info = (ArtifactInfo) e.getValue();
+      if(Indexer.NAMES.equals(field)) {
+        if(info.className != null && info.className.toLowerCase().startsWith(term)) {
+          artifacts.put(e.getKey(), info);
+        }
+      } else {
+        ArtifactInfo filtered = new ArtifactInfo(info.group, info.artifact, info.packageName, info.className);
+        for(Iterator files = info.files.iterator(); files.hasNext();) {
+          FileInfo fileInfo = (FileInfo) files.next();
+          if(matchesPhrase(getJarName(fileInfo), terms)) {
+            filtered.addFile(fileInfo);
+          }
+        }
+        if(!filtered.files.isEmpty()) {
+          artifacts.put(e.getKey(), filtered);
+        }
+      }
+    }
+    return new SearchResult(artifacts, 0);
+  }
+
+  private static String getJarName(FileInfo fileInfo) {
+    return fileInfo.group.replace('.', '/') + "/" + fileInfo.artifact + "/" + fileInfo.version + "/" + fileInfo.name;
+  }
+
+  /**
+   * Tokenize jar name the same way as {@link Indexer#JAR_NAME} field is tokenized in the index and check if it 
+   * has the given terms at consecutive positions, last term is matched as a prefix.
+   */
+  private boolean matchesPhrase(String jarName, String[] terms) {
+    List tokens = new ArrayList();
+    TokenStream ts = analyzer.tokenStream(Indexer.JAR_NAME, new StringReader(jarName));
+    try {
+      Token token;
+      while((token = ts.next()) != null) {
+        tokens.add(token.termText());
+      }
+    } catch(IOException ex) {
+      return false;
+    } finally {
+      try {
+        ts.close();
+      } catch(IOException ex) {
+        // ignore
+      }
+    }
+
+    int last = terms.length - 1;
+    for(int i = 0; i + last < tokens.size(); i++ ) {
+      int n = 0;
+      while(n < last && terms[n].equals(tokens.get(i + n))) {
+        n++;
+      }
+      if(n == last && ((String) tokens.get(i + n)).startsWith(terms[n])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+
+  private static final class CachedResult {
+    final SearchResult result;
+    final int limit;
+
+    CachedResult(SearchResult result, int limit) {
+      this.result = result;
+      this.limit = limit;
+    }
+  }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Codehaus Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.maven.ide.eclipse.index;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.search.IndexSearcher;
+
+
+/**
+ * Reference counted searcher over a set of indexes. Searcher is kept open between queries 
+ * and readers are closed when searcher is released by the owner and by all running searches.
+ */
+class SharedIndexSearcher {
+  private final IndexReader[] readers;
+  private final IndexSearcher searcher;
+  private final SearchResultCache cache = new SearchResultCache();
+  
+  /** owner reference plus number of running searches */
+  private int refCount = 1;
+
+  public SharedIndexSearcher(File[] indexes) throws IOException {
+    readers = new IndexReader[indexes.length];
+    try {
+      for(int i = 0; i < indexes.length; i++ ) {
+        readers[i] = IndexReader.open(indexes[i]);
+      }
+    } catch(IOException ex) {
+      close();
+      throw ex;
+    }
+    searcher = new IndexSearcher(new MultiReader(readers));
+  }
+
+  public IndexSearcher getSearcher() {
+    return searcher;
+  }
+
+  /**
+   * Returns result cache valid for the indexes opened by this searcher
+   */
+  public SearchResultCache getCache() {
+    return cache;
+  }
+
+  public synchronized void acquire() {
+    refCount++;
+  }
+
+  public synchronized void release() {
+    refCount--;
+    if(refCount == 0) {
+      close();
+    }
+  }
+
+  private void close() {
+    for(int i = 0; i < readers.length; i++ ) {
+      try {
+        if(readers[i] != null) {
+          readers[i].close();
+        }
+      } catch(IOException ex) {
+        // ignore
+      }
+    }
+  }
+
+}
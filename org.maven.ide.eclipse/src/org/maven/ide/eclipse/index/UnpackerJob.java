@@ -21,90 +21,198 @@ package org.maven.ide.eclipse.index;
  */
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
-import java.util.Set;
+import java.util.Properties;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
+import org.apache.lucene.index.IndexReader;
+
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.maven.ide.eclipse.Maven2Plugin;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
 
 
 /**
- * UnpackerJob
+ * Unpacks indexes bundled with the plugin. Bundle version and archive checksum are saved next to the 
+ * unpacked index and extraction is skipped when they match. Each extraction goes into a new generation 
+ * folder and the manager is switched to it once it is complete, so searcher never sees partially written 
+ * index. Folders of the previous generations are deleted when they are no longer open.
  *
  * @author Eugene Kuleshov
  */
 class UnpackerJob extends Job {
+  private static final String VERSION = "version";
+  private static final String SHA1 = "sha1";
+  private static final String GENERATION = "generation";
+
   private final Bundle bundle;
   private final File indexDir;
-  private final Set indexes;
+  private final MavenRepositoryIndexManager indexManager;
   private final String[] indexNames;
 
-  public UnpackerJob(Bundle bundle, File indexDir, String[] indexNames, Set indexes) {
+  public UnpackerJob(Bundle bundle, File indexDir, String[] indexNames, MavenRepositoryIndexManager indexManager) {
     super("Initializing indexes");
     this.bundle = bundle;
     this.indexDir = indexDir;
     this.indexNames = indexNames;
-    this.indexes = indexes;
+    this.indexManager = indexManager;
 
     setPriority(Job.LONG);
   }
 
   protected IStatus run(IProgressMonitor monitor) {
+    String version = String.valueOf(bundle.getHeaders().get(Constants.BUNDLE_VERSION));
     for(int i = 0; i < indexNames.length; i++ ) {
       String name = indexNames[i];
 
-      File index = new File(indexDir, name);
-      if(!index.exists()) {
-        index.mkdirs();
-      } else {
-        File[] files = index.listFiles();
-        for(int j = 0; j < files.length; j++ ) {
-          files[j].delete();
-        }
-      }
-
       monitor.subTask(name);
-      URL indexArchive = bundle.getEntry(name + ".zip");
-      InputStream is = null;
-      ZipInputStream zis = null;
       try {
-        is = indexArchive.openStream();
-        zis = new ZipInputStream(is);
-        ZipEntry entry;
-        byte[] buf = new byte[4096];
-        while((entry = zis.getNextEntry()) != null) {
-          File indexFile = new File(index, entry.getName());
-          FileOutputStream fos = null;
-          try {
-            fos = new FileOutputStream(indexFile);
-            int n = 0;
-            while((n = zis.read(buf)) != -1) {
-              fos.write(buf, 0, n);
-            }
-          } finally {
-            close(fos);
-          }
+        URL indexArchive = bundle.getEntry(name + ".zip");
+        if(indexArchive == null) {
+          throw new IOException("Can't find " + name + ".zip");
+        }
+        
+        File stampFile = new File(indexDir, name + ".properties");
+        Properties stamp = loadStamp(stampFile);
+        int generation = getGeneration(stamp);
+        File index = new File(indexDir, name + "." + generation);
+
+        String sha1 = getSha1(indexArchive);
+        if(!version.equals(stamp.getProperty(VERSION)) || !sha1.equals(stamp.getProperty(SHA1))
+            || !IndexReader.indexExists(index)) {
+          generation++;
+          index = new File(indexDir, name + "." + generation);
+          delete(index);
+          index.mkdirs();
+          unpack(indexArchive, index);
+
+          // new generation is used from now on
+          stamp.setProperty(VERSION, version);
+          stamp.setProperty(SHA1, sha1);
+          stamp.setProperty(GENERATION, Integer.toString(generation));
+          saveStamp(stampFile, stamp);
+
+          indexManager.indexChanged(name, index);
+        } else {
+          indexManager.addIndex(name, index);
         }
-        indexes.add(name);
+
+        // can fail while old generation is still open, then it will be removed next time
+        deleteOldGenerations(name, index);
+        
       } catch(Exception ex) {
         Maven2Plugin.log(new Status(IStatus.ERROR, Maven2Plugin.PLUGIN_ID, -1, "Unable to initialize indexes", ex));
+      }
+    }
+    return Status.OK_STATUS;
+  }
+
+  private String getSha1(URL indexArchive) throws IOException {
+    InputStream is = null;
+    try {
+      is = indexArchive.openStream();
+      return Indexer.getSha1(is);
+    } finally {
+      close(is);
+    }
+  }
 
+  private void unpack(URL indexArchive, File index) throws IOException {
+    InputStream is = null;
+    ZipInputStream zis = null;
+    try {
+      is = indexArchive.openStream();
+      zis = new ZipInputStream(is);
+      ZipEntry entry;
+      byte[] buf = new byte[4096];
+      while((entry = zis.getNextEntry()) != null) {
+        File indexFile = new File(index, entry.getName());
+        FileOutputStream fos = null;
+        try {
+          fos = new FileOutputStream(indexFile);
+          int n = 0;
+          while((n = zis.read(buf)) != -1) {
+            fos.write(buf, 0, n);
+          }
+        } finally {
+          close(fos);
+        }
+      }
+    } finally {
+      close(zis);
+      close(is);
+    }
+  }
+
+  private static int getGeneration(Properties stamp) {
+    try {
+      return Integer.parseInt(stamp.getProperty(GENERATION, "0"));
+    } catch(NumberFormatException ex) {
+      return 0;
+    }
+  }
+
+  /**
+   * Deletes folders of the given index except the current one, including the folders used by older versions
+   */
+  private void deleteOldGenerations(String name, File index) {
+    File[] files = indexDir.listFiles();
+    if(files == null) {
+      return;
+    }
+    for(int i = 0; i < files.length; i++ ) {
+      File file = files[i];
+      if(file.isDirectory() && !file.equals(index)
+          && (file.getName().equals(name) || file.getName().startsWith(name + "."))) {
+        delete(file);
+      }
+    }
+  }
+
+  private Properties loadStamp(File stampFile) {
+    Properties stamp = new Properties();
+    if(stampFile.exists()) {
+      InputStream is = null;
+      try {
+        is = new FileInputStream(stampFile);
+        stamp.load(is);
+      } catch(IOException ex) {
+        // extract index again
       } finally {
-        close(zis);
         close(is);
       }
     }
-    return Status.OK_STATUS;
+    return stamp;
+  }
+
+  private void saveStamp(File stampFile, Properties stamp) throws IOException {
+    OutputStream os = null;
+    try {
+      os = new FileOutputStream(stampFile);
+      stamp.store(os, null);
+    } finally {
+      close(os);
+    }
+  }
+
+  private static void delete(File file) {
+    if(file.isDirectory()) {
+      File[] files = file.listFiles();
+      for(int i = 0; i < files.length; i++ ) {
+        delete(files[i]);
+      }
+    }
+    file.delete();
   }
 
   private void close(InputStream is) {
@@ -53,4 +53,13 @@ public class Maven2PreferenceConstants {
 
   public static final String P_GLOBAL_SETTINGS_FILE = PREFIX + "globalSettingsFile";
 
+  /** int */
+  public static final String P_INDEXER_THREADS = PREFIX + "indexerThreads";
+
+  /** int */
+  public static final String P_RESOLVER_THREADS = PREFIX + "resolverThreads";
+
+  /** int, hours */
+  public static final String P_MISSING_ATTACHMENTS_TTL = PREFIX + "missingAttachmentsTtl";
+
 }
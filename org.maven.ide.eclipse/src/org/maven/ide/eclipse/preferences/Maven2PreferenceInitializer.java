@@ -49,6 +49,10 @@ public class Maven2PreferenceInitializer extends AbstractPreferenceInitializer {
     store.setDefault( Maven2PreferenceConstants.P_DOWNLOAD_SOURCES, false);
     store.setDefault( Maven2PreferenceConstants.P_DOWNLOAD_JAVADOC, false);
     
+    store.setDefault( Maven2PreferenceConstants.P_INDEXER_THREADS, Runtime.getRuntime().availableProcessors());
+    store.setDefault( Maven2PreferenceConstants.P_RESOLVER_THREADS, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    store.setDefault( Maven2PreferenceConstants.P_MISSING_ATTACHMENTS_TTL, 24);
+    
     // store.setDefault( Maven2PreferenceConstants.P_GLOBAL_CHECKSUM_POLICY, ArtifactRepositoryPolicy.CHECKSUM_POLICY_WARN);
     // store.setDefault( Maven2PreferenceConstants.P_UPDATE_SNAPSHOTS, false);
     // store.setDefault( Maven2PreferenceConstants.P_CHECK_LATEST_PLUGIN_VERSION, false);
@@ -30,6 +30,7 @@ import org.eclipse.jface.dialogs.IMessageProvider;
 import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.jface.preference.FileFieldEditor;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.jface.preference.StringFieldEditor;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.SelectionAdapter;
@@ -121,6 +122,22 @@ public class Maven2PreferencePage extends FieldEditorPreferencePage implements I
         Messages.getString("preferences.debugOutput"), //$NON-NLS-1$
         getFieldEditorParent()));
 
+    IntegerFieldEditor indexerThreadsEditor = new IntegerFieldEditor(Maven2PreferenceConstants.P_INDEXER_THREADS, //
+        Messages.getString("preferences.indexerThreads"), getFieldEditorParent()); //$NON-NLS-1$
+    indexerThreadsEditor.setValidRange(1, 64);
+    addField(indexerThreadsEditor);
+
+    IntegerFieldEditor resolverThreadsEditor = new IntegerFieldEditor(Maven2PreferenceConstants.P_RESOLVER_THREADS, //
+        Messages.getString("preferences.resolverThreads"), getFieldEditorParent()); //$NON-NLS-1$
+    resolverThreadsEditor.setValidRange(1, 16);
+    addField(resolverThreadsEditor);
+
+    IntegerFieldEditor missingAttachmentsTtlEditor = new IntegerFieldEditor(
+        Maven2PreferenceConstants.P_MISSING_ATTACHMENTS_TTL, //
+        Messages.getString("preferences.missingAttachmentsTtl"), getFieldEditorParent()); //$NON-NLS-1$
+    missingAttachmentsTtlEditor.setValidRange(0, 24 * 365);
+    addField(missingAttachmentsTtlEditor);
+
     globalSettingsEditor = new FileFieldEditor(Maven2PreferenceConstants.P_GLOBAL_SETTINGS_FILE, //
         Messages.getString("preferences.globalSettingsFile"), getFieldEditorParent()) {{  //$NON-NLS-1$
           setValidateStrategy(VALIDATE_ON_KEY_STROKE);
@@ -183,8 +200,8 @@ public class Maven2PreferencePage extends FieldEditorPreferencePage implements I
     reindexButton.setText(Messages.getString("preferences.reindexButton"));
     reindexButton.addSelectionListener(new SelectionAdapter() {
       public void widgetSelected(SelectionEvent e) {
-        plugin.getMavenEmbedderManager().invalidateMavenSettings();
-        plugin.getMavenRepositoryIndexManager().reindexLocal(0L);
+        plugin.getBuildpathManager().invalidateMavenSettings();
+        plugin.getMavenRepositoryIndexManager().reindexLocal(false, 0L);
       }
     });
 
@@ -192,7 +209,7 @@ public class Maven2PreferencePage extends FieldEditorPreferencePage implements I
     refreshButton.setText(Messages.getString("preferences.refreshButton"));
     refreshButton.addSelectionListener(new SelectionAdapter() {
       public void widgetSelected(SelectionEvent e) {
-        plugin.getMavenEmbedderManager().invalidateMavenSettings();
+        plugin.getBuildpathManager().invalidateMavenSettings();
         localRepositoryEditor.load();
       }
     });
@@ -243,12 +260,12 @@ public class Maven2PreferencePage extends FieldEditorPreferencePage implements I
       String newGlobalSettings = getPreferenceStore().getString(Maven2PreferenceConstants.P_GLOBAL_SETTINGS_FILE);
 
       if(newGlobalSettings == null ? globalSettings == null : !newGlobalSettings.equals(globalSettings)) {
-        plugin.getMavenEmbedderManager().invalidateMavenSettings();
+        plugin.getBuildpathManager().invalidateMavenSettings();
       }
 
       File newRepositoryDir = plugin.getMavenEmbedderManager().getLocalRepositoryDir();
       if(!newRepositoryDir.equals(localRepositoryDir)) {
-        plugin.getMavenRepositoryIndexManager().reindexLocal(0L);
+        plugin.getMavenRepositoryIndexManager().reindexLocal(false, 0L);
       }
     }
     return res;